@@ -0,0 +1,28 @@
+package ru.syncfamily.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск бенчмарков с профайлером GC: кроме времени в отчёт попадает {@code gc.alloc.rate.norm} —
+ * сколько байт выделяется на одну операцию. Аргументы — регулярные выражения имён бенчмарков
+ * (без аргументов запускаются все).
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var options = new OptionsBuilder().addProfiler(GCProfiler.class);
+        if (args.length == 0) {
+            options.include(BenchmarkRunner.class.getPackageName() + ".*");
+        }
+        for (String include : args) {
+            options.include(include);
+        }
+        new Runner(options.build()).run();
+    }
+}
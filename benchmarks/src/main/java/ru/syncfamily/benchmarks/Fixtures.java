@@ -0,0 +1,59 @@
+package ru.syncfamily.benchmarks;
+
+import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.ProductKey;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Данные, похожие на настоящие: названия продуктов разной длины, примерно треть уже куплена.
+ */
+final class Fixtures {
+
+    private static final String[] NAMES = {
+            "Молоко", "Хлеб бородинский", "Сыр", "Яйца С0 десяток", "Бананы", "Кофе в зёрнах 1 кг",
+            "Туалетная бумага", "Гречка", "Помидоры черри", "Куриное филе", "Масло сливочное 82%", "Йогурт"
+    };
+
+    static final String SHORT_MESSAGE = "молоко, хлеб";
+
+    static final String MULTILINE_MESSAGE = """
+            Молоко 2 л
+            хлеб бородинский; сыр
+            яйца, бананы ,  кофе в зёрнах
+            
+            туалетная бумага
+            ГРЕЧКА;помидоры черри;куриное филе
+            масло сливочное, йогурт, вода 5 л, овсянка
+            """;
+
+    private Fixtures() {
+    }
+
+    static List<Product> products(int size) {
+        var products = new ArrayList<Product>(size);
+        var createdAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for (int i = 0; i < size; i++) {
+            products.add(Product.builder()
+                    .id(100_000L + i)
+                    .productName(NAMES[i % NAMES.length] + (i < NAMES.length ? "" : " " + i))
+                    .isBought(i % 3 == 0)
+                    .createdAt(createdAt.plusMinutes(i))
+                    .familyId(42L)
+                    .build());
+        }
+        return products;
+    }
+
+    /**
+     * Те же продукты в порядке списка — как в снимке семьи.
+     */
+    static List<Product> orderedProducts(int size) {
+        var products = products(size);
+        products.sort(Comparator.comparing(ProductKey::of));
+        return products;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.syncfamily.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import ru.syncfamily.service.impl.TelegramUiServiceImpl;
+import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.ProductKey;
+import ru.syncfamily.service.model.ProductPage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение клавиатуры списка — выполняется на каждого члена семьи при каждой перерисовке.
+ * {@code pageSize} больше {@code size} — клавиатура без листания, на весь список.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyboardBenchmark {
+
+    @Param({"10", "100", "500"})
+    int size;
+
+    @Param({"20", "1000"})
+    int pageSize;
+
+    @Param({"false", "true"})
+    boolean edit;
+
+    private final TelegramUiServiceImpl uiService = new TelegramUiServiceImpl();
+    private List<Product> products;
+    private ProductPage page;
+    private ProductKey middle;
+
+    @Setup
+    public void setUp() {
+        products = Fixtures.orderedProducts(size);
+        page = ProductPage.of(products, null, pageSize, 1);
+        middle = ProductKey.of(products.get(size / 2));
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup createShoppingListKeyboard() {
+        return uiService.createShoppingListKeyboard(page, edit);
+    }
+
+    /**
+     * Нарезка страницы из снимка семьи по курсору в середине списка.
+     */
+    @Benchmark
+    public ProductPage pageFromSnapshot() {
+        return ProductPage.of(products, middle, pageSize, 1);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.syncfamily.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.syncfamily.service.impl.ListParser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор текстового сообщения на продукты.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListParserBenchmark {
+
+    private final ListParser listParser = new ListParser(",|;|\n");
+
+    @Benchmark
+    public List<String> parseShort() {
+        return listParser.parse(Fixtures.SHORT_MESSAGE);
+    }
+
+    @Benchmark
+    public List<String> parseMultiline() {
+        return listParser.parse(Fixtures.MULTILINE_MESSAGE);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.syncfamily.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import ru.syncfamily.service.impl.RenderedKeyboard;
+import ru.syncfamily.service.impl.TelegramUiServiceImpl;
+import ru.syncfamily.service.model.ProductPage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация запросов к Telegram в JSON — так их отправляет клиент telegrambots.
+ * {@code rendered} — клавиатура из кэша, уже сериализованная ({@link RenderedKeyboard}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadSerializationBenchmark {
+
+    @Param({"10", "100", "500"})
+    int size;
+
+    @Param({"20", "1000"})
+    int pageSize;
+
+    @Param({"false", "true"})
+    boolean rendered;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SendMessage sendMessage;
+    private EditMessageText editMessageText;
+
+    @Setup
+    public void setUp() {
+        InlineKeyboardMarkup keyboard = new TelegramUiServiceImpl()
+                .createShoppingListKeyboard(ProductPage.of(Fixtures.orderedProducts(size), null, pageSize, 1), false);
+        if (rendered) {
+            keyboard = RenderedKeyboard.of(keyboard);
+        }
+        sendMessage = SendMessage.builder()
+                .chatId(123456789L)
+                .text("🛒 Список покупок обновлен (Анна):")
+                .replyMarkup(keyboard)
+                .build();
+        editMessageText = EditMessageText.builder()
+                .chatId(123456789L)
+                .messageId(4242)
+                .text("🛒 *Список обновлен* ✅ *Анна* купил(а): *Молоко*")
+                .parseMode("Markdown")
+                .replyMarkup(keyboard)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] sendMessage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(sendMessage);
+    }
+
+    @Benchmark
+    public byte[] editMessageText() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(editMessageText);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.syncfamily.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.syncfamily.service.model.CallBack;
+import ru.syncfamily.service.model.CallBackToken;
+import ru.syncfamily.service.model.Command;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение действия по callback data и команды по тексту — на каждое обновление.
+ * Callback data сравнивается в двух форматах: токены и старый «действие + id» с перебором префиксов.
+ * Набор входов покрывает первые, последние и неизвестные значения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    private static final String[] LEGACY_CALLBACKS = {
+            "buy100123", "refresh", "confirm_edit_product100500", "delete_product100777",
+            "clear_all", "confirm_leave_family", "something_else"
+    };
+
+    private static final String[] TOKEN_CALLBACKS = {
+            CallBackToken.of(CallBack.BUY, 100123, 987654321, 42).encode(),
+            CallBack.REFRESH.callbackData(),
+            CallBackToken.of(CallBack.CONFIRM_EDIT_PRODUCT, 100500, 987654321, 42).encode(),
+            CallBackToken.of(CallBack.DELETE_PRODUCT, 100777, 987654321, 42).encode(),
+            CallBack.CLEAR_ALL.callbackData(),
+            CallBack.CONFIRM_LEAVE_FAMILY.callbackData(),
+            "~broken"
+    };
+
+    private static final String[] COMMANDS = {
+            "/start", "/start AB12CD34", "/create_family", "/help"
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(7)
+    public void callBackLegacy(Blackhole blackhole) {
+        for (String data : LEGACY_CALLBACKS) {
+            blackhole.consume(CallBackToken.decode(data));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(7)
+    public void callBackToken(Blackhole blackhole) {
+        for (String data : TOKEN_CALLBACKS) {
+            blackhole.consume(CallBackToken.decode(data));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public void commandGetCommand(Blackhole blackhole) {
+        for (String text : COMMANDS) {
+            blackhole.consume(Command.getCommand(text));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.syncfamily.loadtest;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Формат callback data бота ({@code CallBackToken}): {@code ~} + base64url от
+ * {@code [формат][код действия][varint id продукта][varint версия страницы][varint версия семьи]}. Нагрузочный тест читает
+ * из кнопок id продуктов и собирает кнопки, которые пользователь увидел бы на следующем шаге.
+ */
+final class CallbackTokens {
+
+    static final int BUY = 1;
+    static final int REFRESH = 6;
+    static final int DELETE_PRODUCT = 8;
+
+    private static final byte FORMAT = 1;
+
+    private CallbackTokens() {
+    }
+
+    record Token(int action, long productId, long listVersion, long familyVersion) {
+    }
+
+    static Token decode(String data) {
+        if (data == null || !data.startsWith("~")) {
+            return null;
+        }
+        try {
+            var bytes = Base64.getUrlDecoder().decode(data.substring(1));
+            if (bytes.length < 4 || bytes[0] != FORMAT) {
+                return null;
+            }
+            var position = new int[]{2};
+            long productId = readVarLong(bytes, position);
+            long listVersion = readVarLong(bytes, position);
+            long familyVersion = position[0] < bytes.length ? readVarLong(bytes, position) : 0;
+            return new Token(bytes[1], productId, listVersion, familyVersion);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    static String encode(int action, long productId, long listVersion, long familyVersion) {
+        var bytes = new byte[27];
+        bytes[0] = FORMAT;
+        bytes[1] = (byte) action;
+        int length = writeVarLong(bytes, 2, productId);
+        length = writeVarLong(bytes, length, listVersion);
+        length = writeVarLong(bytes, length, familyVersion);
+        return "~" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(bytes, length));
+    }
+
+    private static int writeVarLong(byte[] bytes, int offset, long value) {
+        int position = offset;
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Слишком длинное число в токене");
+    }
+}
@@ -0,0 +1,211 @@
+package ru.syncfamily.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Заглушка Telegram Bot API: {@code /bot<token>/<method>}.
+ * <p>
+ * {@code getUpdates} отдаёт сгенерированные обновления (long polling с таймаутом из запроса).
+ * Остальные методы отвечают после заданной задержки, с заданной вероятностью — 429 с retry_after,
+ * и записываются в статистику; отправки и правки сообщений отмечают ответ семье в {@link LatencyTracker}.
+ */
+final class FakeTelegramApi implements AutoCloseable {
+
+    private static final String GET_UPDATES = "getupdates";
+    private static final String SEND_MESSAGE = "sendmessage";
+    private static final String EDIT_MESSAGE_TEXT = "editmessagetext";
+
+    private final LoadTestConfig config;
+    private final ObjectMapper objectMapper;
+    private final Workload workload;
+    private final LatencyTracker latencyTracker;
+
+    private final BlockingQueue<Workload.Generated> updates = new LinkedBlockingQueue<>();
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final LongAdder tooManyRequests = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final AtomicInteger nextMessageId = new AtomicInteger(1_000_000);
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+
+    FakeTelegramApi(LoadTestConfig config, ObjectMapper objectMapper, Workload workload,
+                    LatencyTracker latencyTracker) throws IOException {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.workload = workload;
+        this.latencyTracker = latencyTracker;
+        this.server = HttpServer.create(new InetSocketAddress(config.port()), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void offer(Workload.Generated update) {
+        updates.add(update);
+    }
+
+    long delivered() {
+        return delivered.sum();
+    }
+
+    long tooManyRequests() {
+        return tooManyRequests.sum();
+    }
+
+    Map<String, Long> calls() {
+        var snapshot = new TreeMap<String, Long>();
+        calls.forEach((method, count) -> snapshot.put(method, count.sum()));
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var path = exchange.getRequestURI().getPath();
+            var prefix = "/bot" + config.token() + "/";
+            if (!path.startsWith(prefix)) {
+                respond(exchange, 404, error(404, "Not Found"));
+                return;
+            }
+            var method = path.substring(prefix.length()).toLowerCase(Locale.ROOT);
+            var body = exchange.getRequestBody().readAllBytes();
+            JsonNode request = body.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(body);
+
+            if (GET_UPDATES.equals(method)) {
+                respond(exchange, 200, ok(getUpdates(request)));
+                return;
+            }
+
+            calls.computeIfAbsent(method, ignored -> new LongAdder()).increment();
+            sleep(config.apiLatency().toMillis()
+                    + ThreadLocalRandom.current().nextLong(config.apiJitter().toMillis() + 1));
+            if (ThreadLocalRandom.current().nextDouble() < config.tooManyRequests()) {
+                tooManyRequests.increment();
+                var response = error(429, "Too Many Requests: retry after " + config.retryAfter());
+                response.putObject("parameters").put("retry_after", config.retryAfter());
+                respond(exchange, 429, response);
+                return;
+            }
+            respond(exchange, 200, ok(execute(method, request)));
+        } catch (Exception e) {
+            System.err.println("Ошибка заглушки Bot API: " + e);
+        }
+    }
+
+    private JsonNode getUpdates(JsonNode request) throws InterruptedException {
+        int limit = request.path("limit").asInt(100);
+        int timeout = request.path("timeout").asInt(0);
+        var batch = new ArrayList<Workload.Generated>();
+        var first = updates.poll(timeout, TimeUnit.SECONDS);
+        if (first != null) {
+            batch.add(first);
+            updates.drainTo(batch, Math.max(limit, 1) - 1);
+        }
+        long now = System.nanoTime();
+        var result = objectMapper.createArrayNode();
+        for (var generated : batch) {
+            latencyTracker.delivered(generated.familyId(), now);
+            result.add(generated.update());
+        }
+        delivered.add(batch.size());
+        return result;
+    }
+
+    private JsonNode execute(String method, JsonNode request) {
+        return switch (method) {
+            case SEND_MESSAGE -> message(request, nextMessageId.incrementAndGet());
+            case EDIT_MESSAGE_TEXT -> message(request, request.path("message_id").asInt());
+            default -> objectMapper.getNodeFactory().booleanNode(true);
+        };
+    }
+
+    /**
+     * Отправленное или отредактированное сообщение: отмечаем ответ семье и запоминаем кнопки.
+     */
+    private JsonNode message(JsonNode request, int messageId) {
+        long chatId = Long.parseLong(request.path("chat_id").asText());
+        var family = workload.familyOf(chatId);
+        if (family != null) {
+            latencyTracker.responded(family.id(), System.nanoTime());
+            workload.keyboardShown(chatId, messageId, callbackData(request));
+        }
+
+        var message = objectMapper.createObjectNode();
+        message.put("message_id", messageId);
+        message.put("date", Instant.now().getEpochSecond());
+        message.putObject("chat").put("id", chatId).put("type", "private");
+        message.put("text", request.path("text").asText(""));
+        return message;
+    }
+
+    private static List<String> callbackData(JsonNode request) {
+        var data = new ArrayList<String>();
+        for (var row : request.path("reply_markup").path("inline_keyboard")) {
+            for (var button : row) {
+                if (button.hasNonNull("callback_data")) {
+                    data.add(button.get("callback_data").asText());
+                }
+            }
+        }
+        return data;
+    }
+
+    private ObjectNode ok(JsonNode result) {
+        var response = objectMapper.createObjectNode();
+        response.put("ok", true);
+        response.set("result", result);
+        return response;
+    }
+
+    private ObjectNode error(int code, String description) {
+        var response = objectMapper.createObjectNode();
+        response.put("ok", false);
+        response.put("error_code", code);
+        response.put("description", description);
+        return response;
+    }
+
+    private void respond(HttpExchange exchange, int status, JsonNode response) throws IOException {
+        var bytes = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+}
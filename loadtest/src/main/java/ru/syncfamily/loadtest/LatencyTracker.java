@@ -0,0 +1,65 @@
+package ru.syncfamily.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Время от выдачи обновления боту до ответа. Ответом считается первая отправка или правка сообщения
+ * в любом чате семьи после выдачи: именно тогда изменение видно членам семьи. Несколько обновлений,
+ * склеенных ботом в одну перерисовку, получают ответ одновременно.
+ */
+final class LatencyTracker {
+
+    private final Map<Long, ConcurrentLinkedDeque<Long>> pendingByFamily = new ConcurrentHashMap<>();
+
+    private long[] latencies = new long[1024];
+    private int count;
+
+    void delivered(long familyId, long nanos) {
+        pendingByFamily.computeIfAbsent(familyId, ignored -> new ConcurrentLinkedDeque<>()).addLast(nanos);
+    }
+
+    void responded(long familyId, long nanos) {
+        var pending = pendingByFamily.get(familyId);
+        if (pending == null) {
+            return;
+        }
+        Long deliveredAt;
+        while ((deliveredAt = pending.peekFirst()) != null && deliveredAt <= nanos) {
+            var answered = pending.pollFirst();
+            if (answered != null) {
+                record(nanos - answered);
+            }
+        }
+    }
+
+    int unanswered() {
+        return pendingByFamily.values().stream().mapToInt(ConcurrentLinkedDeque::size).sum();
+    }
+
+    private synchronized void record(long latency) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latency;
+    }
+
+    synchronized int answered() {
+        return count;
+    }
+
+    /**
+     * Перцентиль в наносекундах, {@code quantile} от 0 до 1.
+     */
+    synchronized long percentile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        var sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+}
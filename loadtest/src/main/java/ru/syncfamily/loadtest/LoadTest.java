@@ -0,0 +1,103 @@
+package ru.syncfamily.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный прогон: готовит семьи в базе, поднимает заглушку Bot API, с заданной частотой
+ * выдаёт боту обновления и по окончании печатает пропускную способность, задержки и число
+ * запросов к API на одно обновление. Бот запускается отдельно с {@code sync-family.bot.api-url},
+ * указывающим на заглушку.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var config = LoadTestConfig.parse(args);
+        var objectMapper = new ObjectMapper();
+
+        var families = new Seeder(config).seed();
+        System.out.printf("Создано семей: %d по %d человек%n", families.size(), config.members());
+
+        var workload = new Workload(config, objectMapper, families);
+        var latencyTracker = new LatencyTracker();
+        try (var api = new FakeTelegramApi(config, objectMapper, workload, latencyTracker)) {
+            api.start();
+            System.out.printf("Заглушка Bot API слушает порт %d; ждём, пока бот начнёт забирать обновления%n",
+                    config.port());
+
+            long started = System.nanoTime();
+            generate(config, workload, api);
+            long generated = System.nanoTime();
+            waitForAnswers(config.drain(), latencyTracker);
+            long finished = System.nanoTime();
+
+            report(config, api, latencyTracker, generated - started, finished - started);
+        }
+    }
+
+    /**
+     * Обновления выдаются равномерно с частотой {@code rate}; отставание генератора не накапливается.
+     */
+    private static void generate(LoadTestConfig config, Workload workload, FakeTelegramApi api) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / config.rate());
+        long start = System.nanoTime();
+        long end = start + config.duration().toNanos();
+        for (long i = 0; ; i++) {
+            long at = start + i * interval;
+            if (at >= end) {
+                return;
+            }
+            long wait = at - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            api.offer(workload.next());
+        }
+    }
+
+    private static void waitForAnswers(Duration drain, LatencyTracker latencyTracker) throws InterruptedException {
+        long deadline = System.nanoTime() + drain.toNanos();
+        while (latencyTracker.unanswered() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+    }
+
+    private static void report(LoadTestConfig config, FakeTelegramApi api, LatencyTracker latencyTracker,
+                               long generationNanos, long totalNanos) {
+        long delivered = api.delivered();
+        int answered = latencyTracker.answered();
+        var calls = api.calls();
+        long totalCalls = calls.values().stream().mapToLong(Long::longValue).sum();
+
+        System.out.println();
+        System.out.println("=== Итоги прогона ===");
+        System.out.printf(Locale.ROOT, "Семей x членов:            %d x %d%n", config.families(), config.members());
+        System.out.printf(Locale.ROOT, "Выдано обновлений:         %d (%.1f/с при заданных %.1f/с)%n",
+                delivered, delivered / seconds(generationNanos), config.rate());
+        System.out.printf(Locale.ROOT, "Получили ответ:            %d (%.1f/с), без ответа: %d%n",
+                answered, answered / seconds(totalNanos), latencyTracker.unanswered());
+        System.out.printf(Locale.ROOT, "Задержка до ответа, мс:    p50=%.1f p99=%.1f max=%.1f%n",
+                millis(latencyTracker.percentile(0.50)),
+                millis(latencyTracker.percentile(0.99)),
+                millis(latencyTracker.percentile(1.0)));
+        System.out.printf(Locale.ROOT, "Запросов к API:            %d (%.2f на обновление), из них 429: %d%n",
+                totalCalls, delivered == 0 ? 0.0 : (double) totalCalls / delivered, api.tooManyRequests());
+        calls.forEach((method, count) -> System.out.printf(Locale.ROOT, "  %-24s %d (%.2f на обновление)%n",
+                method, count, delivered == 0 ? 0.0 : (double) count / delivered));
+    }
+
+    private static double seconds(long nanos) {
+        return Math.max(nanos, 1) / 1e9;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
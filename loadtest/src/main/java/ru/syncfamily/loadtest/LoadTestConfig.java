@@ -0,0 +1,104 @@
+package ru.syncfamily.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Параметры прогона. Задаются аргументами вида {@code --rate=200 --duration=2m}.
+ *
+ * @param port              порт заглушки Bot API
+ * @param token             токен, с которым запущен бот (проверяется в пути запроса)
+ * @param families          число семей
+ * @param members           членов в каждой семье
+ * @param initialProducts   продуктов в списке каждой семьи на старте
+ * @param rate              обновлений в секунду
+ * @param duration          сколько генерировать обновления
+ * @param drain             сколько ждать ответов на последние обновления
+ * @param textWeight        доля текстовых сообщений (добавление продуктов)
+ * @param buyWeight         доля нажатий на продукт
+ * @param refreshWeight     доля обновлений списка
+ * @param deleteWeight      доля удалений продукта
+ * @param apiLatency        задержка ответа Bot API
+ * @param apiJitter         случайная добавка к задержке, от 0 до указанной
+ * @param tooManyRequests   вероятность ответить 429 на исходящий запрос бота
+ * @param retryAfter        retry_after в ответе 429, секунд
+ * @param jdbcUrl           база бота, в ней создаются семьи нагрузочного теста
+ */
+public record LoadTestConfig(int port,
+                             String token,
+                             int families,
+                             int members,
+                             int initialProducts,
+                             double rate,
+                             Duration duration,
+                             Duration drain,
+                             int textWeight,
+                             int buyWeight,
+                             int refreshWeight,
+                             int deleteWeight,
+                             Duration apiLatency,
+                             Duration apiJitter,
+                             double tooManyRequests,
+                             int retryAfter,
+                             String jdbcUrl,
+                             String dbUser,
+                             String dbPassword) {
+
+    private static final Set<String> KNOWN_KEYS = Set.of(
+            "port", "token", "families", "members", "initial-products", "rate", "duration", "drain",
+            "text", "buy", "refresh", "delete", "api-latency", "api-jitter", "too-many-requests",
+            "retry-after", "jdbc-url", "db-user", "db-password");
+
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ожидается --ключ=значение: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        var config = new LoadTestConfig(
+                Integer.parseInt(values.getOrDefault("port", "8081")),
+                values.getOrDefault("token", "loadtest"),
+                Integer.parseInt(values.getOrDefault("families", "100")),
+                Integer.parseInt(values.getOrDefault("members", "3")),
+                Integer.parseInt(values.getOrDefault("initial-products", "10")),
+                Double.parseDouble(values.getOrDefault("rate", "50")),
+                duration(values.getOrDefault("duration", "60s")),
+                duration(values.getOrDefault("drain", "15s")),
+                Integer.parseInt(values.getOrDefault("text", "40")),
+                Integer.parseInt(values.getOrDefault("buy", "40")),
+                Integer.parseInt(values.getOrDefault("refresh", "10")),
+                Integer.parseInt(values.getOrDefault("delete", "10")),
+                duration(values.getOrDefault("api-latency", "30ms")),
+                duration(values.getOrDefault("api-jitter", "20ms")),
+                Double.parseDouble(values.getOrDefault("too-many-requests", "0")),
+                Integer.parseInt(values.getOrDefault("retry-after", "1")),
+                values.getOrDefault("jdbc-url", "jdbc:postgresql://localhost:5432/bots"),
+                values.getOrDefault("db-user", "bot"),
+                values.getOrDefault("db-password", "bot"));
+        values.keySet().removeAll(KNOWN_KEYS);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Неизвестные параметры: " + values.keySet());
+        }
+        return config;
+    }
+
+    /**
+     * {@code 500ms}, {@code 30s}, {@code 2m}.
+     */
+    static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            default -> throw new IllegalArgumentException("Непонятная длительность: " + value);
+        };
+    }
+}
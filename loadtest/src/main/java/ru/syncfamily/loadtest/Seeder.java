@@ -0,0 +1,97 @@
+package ru.syncfamily.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Готовит базу бота: удаляет семьи прошлого прогона и создаёт {@code families} семей
+ * по {@code members} человек с начальным списком продуктов.
+ */
+final class Seeder {
+
+    /**
+     * Чаты нагрузочного теста берутся из диапазона, которого нет у настоящих пользователей.
+     */
+    static final long FIRST_CHAT_ID = 7_000_000_000L;
+
+    private static final String INVITE_PREFIX = "loadtest-";
+
+    private static final String[] PRODUCTS = {
+            "Молоко", "Хлеб", "Сыр", "Яйца", "Бананы", "Кофе", "Гречка", "Помидоры", "Курица", "Масло", "Йогурт", "Вода"
+    };
+
+    private final LoadTestConfig config;
+
+    Seeder(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    List<Family> seed() throws SQLException {
+        try (var connection = DriverManager.getConnection(config.jdbcUrl(), config.dbUser(), config.dbPassword())) {
+            connection.setAutoCommit(false);
+            cleanUp(connection);
+            var families = new ArrayList<Family>(config.families());
+            for (int f = 0; f < config.families(); f++) {
+                families.add(createFamily(connection, f));
+            }
+            connection.commit();
+            return families;
+        }
+    }
+
+    private void cleanUp(Connection connection) throws SQLException {
+        var loadTestFamilies = "select id from family_sync.families where invite_code like '" + INVITE_PREFIX + "%'";
+        try (var statement = connection.createStatement()) {
+            statement.execute("update family_sync.users set editing_product_id = null where family_id in (" + loadTestFamilies + ")");
+            statement.execute("delete from family_sync.outbox where family_id in (" + loadTestFamilies + ")");
+            statement.execute("delete from family_sync.shopping_list where family_id in (" + loadTestFamilies + ")");
+            statement.execute("delete from family_sync.purchase_history where family_id in (" + loadTestFamilies + ")");
+            statement.execute("delete from family_sync.product_frequency where family_id in (" + loadTestFamilies + ")");
+            statement.execute("delete from family_sync.users where family_id in (" + loadTestFamilies + ") or chat_id >= " + FIRST_CHAT_ID);
+            statement.execute("delete from family_sync.families where invite_code like '" + INVITE_PREFIX + "%'");
+        }
+    }
+
+    private Family createFamily(Connection connection, int index) throws SQLException {
+        long familyId;
+        try (var insert = connection.prepareStatement(
+                "insert into family_sync.families (invite_code) values (?) returning id")) {
+            insert.setString(1, INVITE_PREFIX + index);
+            try (var rows = insert.executeQuery()) {
+                rows.next();
+                familyId = rows.getLong(1);
+            }
+        }
+
+        var chatIds = new ArrayList<Long>(config.members());
+        try (var insert = connection.prepareStatement(
+                "insert into family_sync.users (chat_id, family_id, username) values (?, ?, ?)")) {
+            for (int m = 0; m < config.members(); m++) {
+                long chatId = FIRST_CHAT_ID + (long) index * config.members() + m;
+                insert.setLong(1, chatId);
+                insert.setLong(2, familyId);
+                insert.setString(3, "Load" + index + "_" + m);
+                insert.addBatch();
+                chatIds.add(chatId);
+            }
+            insert.executeBatch();
+        }
+
+        try (var insert = connection.prepareStatement(
+                "insert into family_sync.shopping_list (family_id, product_name) values (?, ?)")) {
+            for (int p = 0; p < config.initialProducts(); p++) {
+                insert.setLong(1, familyId);
+                insert.setString(2, PRODUCTS[p % PRODUCTS.length] + " " + p);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        return new Family(familyId, List.copyOf(chatIds));
+    }
+
+    record Family(long id, List<Long> chatIds) {
+    }
+}
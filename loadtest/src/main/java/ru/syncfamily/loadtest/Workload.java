@@ -0,0 +1,154 @@
+package ru.syncfamily.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Генератор обновлений: случайный член случайной семьи пишет продукты или нажимает кнопки.
+ * Кнопки берутся из последней клавиатуры, которую бот прислал семье, — так нажатия ссылаются
+ * на существующие продукты, как у настоящих пользователей.
+ */
+final class Workload {
+
+    private static final String[] PRODUCTS = {
+            "молоко", "хлеб", "сыр", "яйца", "бананы", "кофе", "гречка", "помидоры", "курица", "масло",
+            "йогурт", "вода", "яблоки", "рис", "макароны", "сахар", "чай", "печенье"
+    };
+
+    private final LoadTestConfig config;
+    private final ObjectMapper objectMapper;
+    private final List<Seeder.Family> families;
+    private final Map<Long, Seeder.Family> familyByChat = new ConcurrentHashMap<>();
+
+    /**
+     * Кнопки покупки с последней клавиатуры семьи.
+     */
+    private final Map<Long, List<CallbackTokens.Token>> productsByFamily = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> lastMessageByChat = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextUpdateId;
+    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+
+    Workload(LoadTestConfig config, ObjectMapper objectMapper, List<Seeder.Family> families) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.families = families;
+        families.forEach(family -> family.chatIds().forEach(chatId -> familyByChat.put(chatId, family)));
+        // update_id не должны совпадать с прошлыми прогонами: бот отбрасывает уже обработанные
+        this.nextUpdateId = new AtomicInteger((int) (Instant.now().getEpochSecond() % 1_000_000) * 1000);
+    }
+
+    Seeder.Family familyOf(long chatId) {
+        return familyByChat.get(chatId);
+    }
+
+    /**
+     * Бот показал семье клавиатуру: запоминаем кнопки покупки.
+     */
+    void keyboardShown(long chatId, Integer messageId, List<String> callbackData) {
+        var family = familyByChat.get(chatId);
+        if (family == null) {
+            return;
+        }
+        if (messageId != null) {
+            lastMessageByChat.put(chatId, messageId);
+        }
+        var products = new ArrayList<CallbackTokens.Token>();
+        for (String data : callbackData) {
+            var token = CallbackTokens.decode(data);
+            if (token != null && token.action() == CallbackTokens.BUY) {
+                products.add(token);
+            }
+        }
+        if (!products.isEmpty()) {
+            productsByFamily.put(family.id(), products);
+        }
+    }
+
+    Generated next() {
+        var random = ThreadLocalRandom.current();
+        var family = families.get(random.nextInt(families.size()));
+        long chatId = family.chatIds().get(random.nextInt(family.chatIds().size()));
+
+        int total = config.textWeight() + config.buyWeight() + config.refreshWeight() + config.deleteWeight();
+        int roll = random.nextInt(Math.max(total, 1));
+        var products = productsByFamily.getOrDefault(family.id(), List.of());
+
+        ObjectNode update;
+        if (roll < config.textWeight() || products.isEmpty()) {
+            update = textMessage(chatId, randomProducts(random));
+        } else if (roll < config.textWeight() + config.buyWeight()) {
+            var product = products.get(random.nextInt(products.size()));
+            update = callback(chatId, CallbackTokens.encode(CallbackTokens.BUY, product.productId(), product.listVersion(), product.familyVersion()));
+        } else if (roll < config.textWeight() + config.buyWeight() + config.refreshWeight()) {
+            update = callback(chatId, CallbackTokens.encode(CallbackTokens.REFRESH, 0, 0, 0));
+        } else {
+            var product = products.get(random.nextInt(products.size()));
+            update = callback(chatId, CallbackTokens.encode(CallbackTokens.DELETE_PRODUCT, product.productId(), product.listVersion(), product.familyVersion()));
+        }
+        return new Generated(family.id(), update);
+    }
+
+    private static String randomProducts(ThreadLocalRandom random) {
+        int count = 1 + random.nextInt(3);
+        var products = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(PRODUCTS[random.nextInt(PRODUCTS.length)]);
+        }
+        return String.join(random.nextBoolean() ? ", " : "\n", products);
+    }
+
+    private ObjectNode textMessage(long chatId, String text) {
+        var update = objectMapper.createObjectNode();
+        update.put("update_id", nextUpdateId.incrementAndGet());
+        var message = update.putObject("message");
+        message.put("message_id", nextMessageId.incrementAndGet());
+        message.put("date", Instant.now().getEpochSecond());
+        message.set("chat", chat(chatId));
+        message.set("from", user(chatId));
+        message.put("text", text);
+        return update;
+    }
+
+    private ObjectNode callback(long chatId, String data) {
+        var update = objectMapper.createObjectNode();
+        int updateId = nextUpdateId.incrementAndGet();
+        update.put("update_id", updateId);
+        var query = update.putObject("callback_query");
+        query.put("id", "cb" + updateId);
+        query.set("from", user(chatId));
+        query.put("chat_instance", String.valueOf(chatId));
+        query.put("data", data);
+        var message = query.putObject("message");
+        message.put("message_id", lastMessageByChat.getOrDefault(chatId, 1));
+        message.put("date", Instant.now().getEpochSecond());
+        message.set("chat", chat(chatId));
+        return update;
+    }
+
+    private ObjectNode chat(long chatId) {
+        var chat = objectMapper.createObjectNode();
+        chat.put("id", chatId);
+        chat.put("type", "private");
+        return chat;
+    }
+
+    private ObjectNode user(long chatId) {
+        var user = objectMapper.createObjectNode();
+        user.put("id", chatId);
+        user.put("is_bot", false);
+        user.put("first_name", "Load" + (chatId - Seeder.FIRST_CHAT_ID));
+        return user;
+    }
+
+    record Generated(long familyId, ObjectNode update) {
+    }
+}
@@ -1,23 +1,67 @@
 package ru.syncfamily;
 
 import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.telegram.telegrambots.longpolling.util.LongPollingSingleThreadUpdateConsumer;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.syncfamily.config.Metrics;
+import ru.syncfamily.repository.DuplicateUpdateException;
 import ru.syncfamily.service.HandleService;
+import ru.syncfamily.service.UpdateDeduplicator;
+import ru.syncfamily.service.UpdateDispatcher;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @ApplicationScoped
 @RequiredArgsConstructor
-public class SyncFamilyBot implements LongPollingSingleThreadUpdateConsumer {
+public class SyncFamilyBot implements LongPollingUpdateConsumer {
 
 
     private final HandleService handleService;
+    private final UpdateDispatcher dispatcher;
+    private final UpdateDeduplicator deduplicator;
+    private final Metrics metrics;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        // Сколько обновлений обрабатывается прямо сейчас (без ожидающих в очередях полос)
+        metrics.registry().gauge(Metrics.UPDATES_IN_FLIGHT, inFlight);
+    }
 
     @Override
+    public void consume(List<Update> updates) {
+        updates.forEach(this::consume);
+    }
+
     public void consume(Update update) {
+        Long chatId = getChatId(update);
+        if (chatId == null) {
+            return; // Игнорируем другие типы обновлений
+        }
+        // Обновления одной семьи попадают в одну полосу и обрабатываются по порядку.
+        // Уже обработанное обновление отсекается до начала какой-либо работы. Изменение отмечает обновление
+        // в своей транзакции, поэтому упавшая обработка не оставляет отметки и повторная доставка её повторит;
+        // параллельная доставка, проигравшая гонку за отметку, откатывается и пропускается
+        long updateId = update.getUpdateId();
+        dispatcher.dispatch(dispatcher.laneKey(chatId), () -> deduplicator.isProcessed(updateId)
+                .chain(processed -> processed
+                        ? Uni.createFrom().voidItem()
+                        : process(update)
+                        .onFailure(DuplicateUpdateException.class).recoverWithItem(e -> {
+                            log.debug("Обновление {} обработано параллельной доставкой, пропускаем", updateId);
+                            return null;
+                        })
+                        .chain(() -> deduplicator.markProcessed(updateId))));
+    }
+
+    private Uni<Void> process(Update update) {
         Uni<Void> processingUni;
 
         if (update.hasMessage() && update.getMessage().hasText()) {
@@ -25,16 +69,24 @@ public class SyncFamilyBot implements LongPollingSingleThreadUpdateConsumer {
             processingUni = text.startsWith("/")
                     ? handleService.handleCommand(update)
                     : handleService.handleTextMessage(update);
-        } else if (update.hasCallbackQuery()) {
-            processingUni = handleService.handleCallbackQuery(update);
         } else {
-            return; // Игнорируем другие типы обновлений
+            processingUni = handleService.handleCallbackQuery(update);
+        }
+        // Ошибки логирует диспетчер, здесь — только успешное завершение
+        return processingUni
+                .onSubscription().invoke(subscription -> inFlight.incrementAndGet())
+                .onTermination().invoke(inFlight::decrementAndGet)
+                .invoke(() -> log.debug("Обновление успешно обработано"));
+    }
+
+    private static Long getChatId(Update update) {
+        if (update.hasMessage() && update.getMessage().hasText()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
         }
-        // Централизованная подписка с логированием
-        processingUni.subscribe().with(
-                success -> log.debug("Обновление успешно обработано"),
-                failure -> log.error("Критическая ошибка при обработке Update: {}", failure.getMessage())
-        );
+        return null;
     }
 
 }
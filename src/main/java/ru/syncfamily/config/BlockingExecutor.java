@@ -0,0 +1,114 @@
+package ru.syncfamily.config;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Исполнитель блокирующих участков: транзакций JDBC и синхронных вызовов Telegram.
+ * <p>
+ * В режиме {@code worker-pool} всё идёт на общий воркер-пул Quarkus, и параллелизм ограничен его размером.
+ * В режиме {@code virtual-threads} каждая задача получает виртуальный поток, а параллелизм ограничивают
+ * семафоры: по числу соединений в пуле Agroal и по числу одновременных запросов к Telegram.
+ * Так медленный Telegram не занимает потоки, нужные базе.
+ */
+@Slf4j
+@ApplicationScoped
+@RequiredArgsConstructor
+public class BlockingExecutor {
+
+    public enum Mode {
+        WORKER_POOL,
+        VIRTUAL_THREADS
+    }
+
+    @ConfigProperty(name = "sync-family.executor.mode", defaultValue = "worker-pool")
+    Mode mode;
+
+    @ConfigProperty(name = "sync-family.executor.db-permits", defaultValue = "10")
+    int dbPermits;
+
+    @ConfigProperty(name = "sync-family.executor.telegram-permits", defaultValue = "256")
+    int telegramPermits;
+
+    private final Metrics metrics;
+
+    private Executor executor;
+    private ExecutorService virtualThreads;
+
+    private Semaphore dbSemaphore;
+    private Semaphore telegramSemaphore;
+    private Timer dbPermitWait;
+
+    @PostConstruct
+    void init() {
+        if (mode == Mode.VIRTUAL_THREADS) {
+            virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+            executor = virtualThreads;
+            dbSemaphore = new Semaphore(dbPermits, true);
+            // Аналог времени ожидания соединения в пуле Agroal для режима виртуальных потоков
+            dbPermitWait = metrics.timer(Metrics.DB_PERMIT_WAIT, Tags.empty());
+            telegramSemaphore = new Semaphore(telegramPermits);
+        } else {
+            executor = Infrastructure.getDefaultWorkerPool();
+        }
+        log.info("Блокирующие участки выполняются в режиме {}", mode);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+        }
+    }
+
+    /**
+     * Исполнитель для {@code runSubscriptionOn} и асинхронных этапов с блокирующим кодом.
+     */
+    public Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Выполняет работу с базой, заняв разрешение на соединение (только в режиме виртуальных потоков).
+     */
+    public <T> T withDbPermit(Supplier<T> task) {
+        return withPermit(dbSemaphore, dbPermitWait, task);
+    }
+
+    /**
+     * Выполняет синхронный вызов Telegram, заняв разрешение на запрос (только в режиме виртуальных потоков).
+     */
+    public <T> T withTelegramPermit(Supplier<T> task) {
+        return withPermit(telegramSemaphore, null, task);
+    }
+
+    private static <T> T withPermit(Semaphore semaphore, Timer waitTimer, Supplier<T> task) {
+        if (semaphore == null) {
+            return task.get();
+        }
+        long waitStart = System.nanoTime();
+        semaphore.acquireUninterruptibly();
+        if (waitTimer != null) {
+            waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+        try {
+            return task.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package ru.syncfamily.config;
 
+import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.inject.Produces;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.telegram.telegrambots.client.okhttp.OkHttpTelegramClient;
 import org.telegram.telegrambots.longpolling.TelegramBotsLongPollingApplication;
+import org.telegram.telegrambots.longpolling.util.DefaultGetUpdatesGenerator;
+import org.telegram.telegrambots.meta.TelegramUrl;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.meta.generics.TelegramClient;
+import ru.syncfamily.web.TelegramWebhookResource;
+
+import java.net.URI;
+import java.util.Optional;
 
 @Slf4j
 @ApplicationScoped
@@ -19,28 +29,96 @@ public class BotConfig {
 
     public static final String BOT_NAME = "sync_family_bot";
 
+    public enum Mode {
+        LONG_POLLING,
+        WEBHOOK
+    }
+
+    @ConfigProperty(name = "sync-family.bot.mode", defaultValue = "long-polling")
+    Mode mode;
+
+    @ConfigProperty(name = "sync-family.bot.webhook.url")
+    Optional<String> webhookUrl;
+
+    @ConfigProperty(name = "sync-family.bot.webhook.secret-token")
+    Optional<String> webhookSecretToken;
+
+    /**
+     * Адрес Bot API вместо api.telegram.org — например, локальная заглушка нагрузочного теста.
+     */
+    @ConfigProperty(name = "sync-family.bot.api-url")
+    Optional<URI> apiUrl;
+
+    private TelegramBotsLongPollingApplication botsApplication;
 
     @Produces
     @ApplicationScoped
     public TelegramClient telegramClient() {
         // Создаем стандартный клиент на базе OkHttp
-        return new OkHttpTelegramClient(botToken);
+        return new OkHttpTelegramClient(new OkHttpClient(), botToken, telegramUrl());
+    }
+
+    private TelegramUrl telegramUrl() {
+        return apiUrl.map(uri -> TelegramUrl.builder()
+                        .schema(uri.getScheme())
+                        .host(uri.getHost())
+                        .port(uri.getPort() > 0 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80))
+                        .testServer(false)
+                        .build())
+                .orElse(TelegramUrl.DEFAULT_URL);
     }
 
-    void onStart(@Observes StartupEvent ev, ru.syncfamily.SyncFamilyBot syncFamilyBot) {
+    void onStart(@Observes StartupEvent ev, ru.syncfamily.SyncFamilyBot syncFamilyBot, TelegramClient telegramClient) {
         log.info("--------------------------------------------------");
         log.info("🤖 ПОПЫТКА ЗАПУСКА БОТА...");
         log.info("TOKEN: {} **********", botToken.substring(0, 4));
 
-        try (TelegramBotsLongPollingApplication botsApplication = new TelegramBotsLongPollingApplication()) {
-            botsApplication.registerBot(botToken, syncFamilyBot);
+        if (mode == Mode.WEBHOOK) {
+            registerWebhook(telegramClient);
+            return;
+        }
+
+        // Поток старта не блокируем: на StartupEvent подписаны и другие бины (порядок наблюдателей не определён).
+        // Опрос живёт в собственных потоках приложения и закрывается при остановке
+        botsApplication = new TelegramBotsLongPollingApplication();
+        try {
+            botsApplication.registerBot(botToken, this::telegramUrl, new DefaultGetUpdatesGenerator(), syncFamilyBot);
             log.info("✅ БОТ УСПЕШНО ЗАРЕГИСТРИРОВАН В TELEGRAM");
             log.info("--------------------------------------------------");
-
-            // Чтобы поток не закрылся сразу в некоторых режимах
-            Thread.currentThread().join();
         } catch (Exception e) {
             log.error("❌ ОШИБКА ЗАПУСКА:", e);
         }
     }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        if (botsApplication == null) {
+            return;
+        }
+        try {
+            botsApplication.close();
+        } catch (Exception e) {
+            log.error("Ошибка при остановке опроса Telegram", e);
+        }
+    }
+
+    /**
+     * В режиме webhook Telegram сам присылает обновления на {@link TelegramWebhookResource#PATH}:
+     * опрос не нужен, и обновления можно раздавать нескольким экземплярам за балансировщиком.
+     */
+    private void registerWebhook(TelegramClient telegramClient) {
+        var url = webhookUrl.orElseThrow(() ->
+                new IllegalStateException("Не задан sync-family.bot.webhook.url для режима webhook"));
+        var secret = webhookSecretToken.orElseThrow(() ->
+                new IllegalStateException("Не задан sync-family.bot.webhook.secret-token для режима webhook"));
+        try {
+            telegramClient.execute(SetWebhook.builder()
+                    .url(url + TelegramWebhookResource.PATH)
+                    .secretToken(secret)
+                    .build());
+            log.info("✅ WEBHOOK ЗАРЕГИСТРИРОВАН: {}{}", url, TelegramWebhookResource.PATH);
+            log.info("--------------------------------------------------");
+        } catch (TelegramApiException e) {
+            log.error("❌ ОШИБКА РЕГИСТРАЦИИ WEBHOOK:", e);
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package ru.syncfamily.config;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.repository.FamilyListStore;
+import ru.syncfamily.repository.impl.JdbcFamilyListStore;
+import ru.syncfamily.repository.impl.ReactiveFamilyListStore;
+
+@Slf4j
+@ApplicationScoped
+public class DbClientConfig {
+
+    public enum Client {
+        JDBC,
+        REACTIVE
+    }
+
+    @ConfigProperty(name = "sync-family.db.client", defaultValue = "jdbc")
+    Client client;
+
+    @Produces
+    @Singleton
+    public FamilyListStore familyListStore(Instance<JdbcFamilyListStore> jdbc,
+                                           Instance<ReactiveFamilyListStore> reactive) {
+        log.info("Горячие операции со списком идут через клиент {}", client);
+        // Невыбранная реализация не создаётся вовсе, вместе со своим пулом соединений
+        return client == Client.REACTIVE ? reactive.get() : jdbc.get();
+    }
+}
@@ -0,0 +1,25 @@
+package ru.syncfamily.config;
+
+import io.quarkiverse.jooq.runtime.JooqCustomContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Named;
+import lombok.RequiredArgsConstructor;
+import org.jooq.Configuration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import ru.syncfamily.repository.impl.QueryMetricsListener;
+
+/**
+ * Дополняет конфигурацию jOOQ, подключается через {@code quarkus.jooq.configuration-inject}.
+ */
+@ApplicationScoped
+@Named("jooqConfig")
+@RequiredArgsConstructor
+public class JooqConfig implements JooqCustomContext {
+
+    private final QueryMetricsListener queryMetricsListener;
+
+    @Override
+    public void apply(Configuration configuration) {
+        configuration.set(new DefaultExecuteListenerProvider(queryMetricsListener));
+    }
+}
@@ -0,0 +1,55 @@
+package ru.syncfamily.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Замеры асинхронных цепочек: время считается от подписки на {@code Uni} до его завершения,
+ * а исход попадает в тег {@code outcome} (success, error или cancelled).
+ */
+@ApplicationScoped
+@RequiredArgsConstructor
+public class Metrics {
+
+    public static final String HANDLER = "sync_family.handler";
+    public static final String TELEGRAM = "sync_family.telegram";
+    public static final String TELEGRAM_QUEUE_DEPTH = "sync_family.telegram.queue.depth";
+    public static final String TELEGRAM_THROTTLE_WAIT = "sync_family.telegram.throttle.wait";
+    public static final String QUERY = "sync_family.db.query";
+    public static final String DB_PERMIT_WAIT = "sync_family.db.permit.wait";
+    public static final String UPDATES_IN_FLIGHT = "sync_family.updates.in_flight";
+
+    private final MeterRegistry registry;
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    public <T> Uni<T> timed(String name, Tags tags, Uni<T> uni) {
+        // Незаполненные обработчики возвращают null: считаем их пустой цепочкой
+        var source = uni == null ? Uni.createFrom().<T>nullItem() : uni;
+        return Uni.createFrom().deferred(() -> {
+            var sample = Timer.start(registry);
+            return source.onTermination().invoke((item, failure, cancelled) -> sample.stop(
+                    timer(name, tags.and("outcome", outcome(failure, cancelled)))));
+        });
+    }
+
+    public Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static String outcome(Throwable failure, boolean cancelled) {
+        if (cancelled) {
+            return "cancelled";
+        }
+        return failure == null ? "success" : "error";
+    }
+}
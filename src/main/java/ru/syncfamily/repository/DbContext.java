@@ -2,6 +2,31 @@ package ru.syncfamily.repository;
 
 import org.jooq.DSLContext;
 
+import java.util.function.Supplier;
+
 public interface DbContext {
     DSLContext dsl();
+
+    /**
+     * Регистрирует действие, которое выполнится только после успешного коммита транзакции.
+     * Используется для обновления in-memory кэшей.
+     */
+    void afterCommit(Runnable action);
+
+    /**
+     * Регистрирует действие на случай отката транзакции: например, сбросить кэш,
+     * который был изменён до коммита.
+     */
+    void afterRollback(Runnable action);
+
+    /**
+     * Эпоха кэшей на начало транзакции: с ней сверяются записи в кэши, см. {@code CacheEpoch}.
+     */
+    long cacheEpoch();
+
+    /**
+     * Объект, который живёт до конца транзакции, по ключу; создаётся при первом обращении.
+     * В нём кэши держат изменения, видимые только этой транзакции, до коммита.
+     */
+    <T> T local(Object key, Supplier<T> initial);
 }
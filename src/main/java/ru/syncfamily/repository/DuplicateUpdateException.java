@@ -0,0 +1,12 @@
+package ru.syncfamily.repository;
+
+/**
+ * Обновление Telegram уже отмечено обработанным (его параллельно обработала другая доставка):
+ * транзакция изменения откатывается, а само обновление пропускается.
+ */
+public class DuplicateUpdateException extends RuntimeException {
+
+    public DuplicateUpdateException(long updateId) {
+        super("Обновление " + updateId + " уже обработано");
+    }
+}
@@ -0,0 +1,39 @@
+package ru.syncfamily.repository;
+
+import io.smallrye.mutiny.Uni;
+import ru.syncfamily.service.model.FamilyList;
+import ru.syncfamily.service.model.ListBroadcast;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Горячие операции со списком семьи, каждая в своей транзакции.
+ * Реализация выбирается настройкой {@code sync-family.db.client}: блокирующий JDBC на исполнителе
+ * блокирующих участков или неблокирующий клиент Postgres на event loop.
+ * <p>
+ * {@code broadcast} по изменённому списку решает, нужна ли перерисовка у членов семьи; если нужна,
+ * она записывается в outbox в той же транзакции, что и изменение, вместе с новой версией списка.
+ * <p>
+ * {@code expectedVersion} — см. {@link ShoppingListRepository}: при конфликте версий ничего не меняется
+ * и перерисовка не записывается.
+ * <p>
+ * {@code updateId} — обновление Telegram, которое применяется: отметка о его обработке пишется в той же транзакции,
+ * если список изменился. Если обновление уже отмечено (параллельная доставка), транзакция откатывается
+ * с {@link DuplicateUpdateException}.
+ */
+public interface FamilyListStore {
+
+    Uni<Optional<FamilyList>> toggleBought(long updateId, long chatId, long productId, Long expectedVersion,
+                                           Function<FamilyList, Optional<ListBroadcast>> broadcast);
+
+    Uni<Optional<FamilyList>> deleteProduct(long updateId, long chatId, long productId, Long expectedVersion,
+                                            Function<FamilyList, Optional<ListBroadcast>> broadcast);
+
+    Uni<Optional<FamilyList>> addProducts(long updateId, long chatId, List<String> products,
+                                          Function<FamilyList, Optional<ListBroadcast>> broadcast);
+
+    Uni<Optional<FamilyList>> renameEditingProduct(long updateId, long chatId, String productName,
+                                                   Function<FamilyList, Optional<ListBroadcast>> broadcast);
+}
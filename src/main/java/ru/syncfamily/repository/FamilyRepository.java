@@ -1,5 +1,6 @@
 package ru.syncfamily.repository;
 
+import ru.syncfamily.service.model.ProductKey;
 import ru.syncfamily.service.model.User;
 
 import java.util.List;
@@ -14,6 +15,11 @@ public interface FamilyRepository {
 
     Optional<User> getFamilyMemberByChatId(DbContext ctx, long chatId);
 
+    /**
+     * Пользователь из кэша в памяти, без обращения к базе.
+     */
+    Optional<User> findCachedMember(long chatId);
+
     List<User> getFamilyMembersByFamilyId(DbContext ctx, long familyId);
 
     boolean joinFamily(DbContext ctx, long chatId, String code, String userName);
@@ -27,4 +33,6 @@ public interface FamilyRepository {
     void setEditingProductId(DbContext ctx, User user, long productId);
 
     void dropEditingProductId(DbContext ctx, User user);
+
+    User setListPage(DbContext ctx, User user, ProductKey after);
 }
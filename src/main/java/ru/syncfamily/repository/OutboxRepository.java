@@ -0,0 +1,29 @@
+package ru.syncfamily.repository;
+
+import ru.syncfamily.service.model.ListBroadcast;
+import ru.syncfamily.service.model.OutboxEntry;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface OutboxRepository {
+
+    void add(DbContext ctx, long familyId, long familyVersion, ListBroadcast broadcast);
+
+    /**
+     * Берёт в аренду до {@code families} семей с необработанными записями (дольше всех ждавшие первыми)
+     * и возвращает все их необработанные записи, старые первыми. Семьи, которые держит другой отправитель,
+     * пропускаются; аренда упавшего отправителя истекает через {@code lease}.
+     */
+    List<OutboxEntry> claim(DbContext ctx, int families, Duration lease);
+
+    void markProcessed(DbContext ctx, List<Long> ids);
+
+    /**
+     * Снимает аренду семьи: её новые записи сразу может взять любой отправитель.
+     */
+    void release(DbContext ctx, long familyId);
+
+    int deleteProcessedBefore(DbContext ctx, OffsetDateTime before);
+}
@@ -0,0 +1,16 @@
+package ru.syncfamily.repository;
+
+import java.time.OffsetDateTime;
+
+public interface ProcessedUpdateRepository {
+
+    /**
+     * Отмечает обновление как обработанное. false — его уже обработали раньше (или другой узел).
+     * Вызывается в транзакции, которая применяет само обновление: отметка коммитится вместе с изменением.
+     */
+    boolean claim(DbContext ctx, long updateId);
+
+    boolean isProcessed(DbContext ctx, long updateId);
+
+    int deleteProcessedBefore(DbContext ctx, OffsetDateTime before);
+}
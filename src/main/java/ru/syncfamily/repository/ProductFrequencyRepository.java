@@ -0,0 +1,19 @@
+package ru.syncfamily.repository;
+
+import ru.syncfamily.service.model.Suggestion;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Частота покупок семьи (таблица product_frequency), которую пополняет перенос купленных продуктов в историю.
+ */
+public interface ProductFrequencyRepository {
+
+    /**
+     * Самые частые покупки семьи, не больше {@code sync-family.suggestions.size}. Читается из кэша в памяти.
+     */
+    List<Suggestion> findTop(DbContext ctx, long familyId);
+
+    Optional<Suggestion> findById(DbContext ctx, long familyId, long id);
+}
@@ -1,22 +1,39 @@
 package ru.syncfamily.repository;
 
 import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.ProductKey;
+import ru.syncfamily.service.model.ProductPage;
 
 import java.util.List;
 import java.util.Optional;
 
 public interface ProductRepository {
-    void addProducts(DbContext ctx, long familyId, List<String> products);
+    List<Product> getAllProductsOrdered(DbContext ctx, long familyId);
 
-    void inverseBought(DbContext ctx, long familyId, long productId);
+    /**
+     * Список семьи из снимка в памяти, без обращения к базе.
+     */
+    Optional<List<Product>> findCachedProducts(long familyId);
 
-    List<Product> getAllProductsOrdered(DbContext ctx, long familyId);
+    /**
+     * Страница списка: до {@code size} продуктов строго после курсора {@code after} (null — с начала).
+     */
+    ProductPage getProductPage(DbContext ctx, long familyId, ProductKey after, int size);
 
-    Optional<Product> findProduct(DbContext ctx, long familyId, long productId);
+    /**
+     * Курсор страницы перед страницей с курсором {@code after}; пусто — это первая страница.
+     */
+    Optional<ProductKey> findPreviousPageAfter(DbContext ctx, long familyId, ProductKey after, int size);
 
-    void deleteAllByFamilyId(DbContext ctx, long familyId);
+    Optional<Product> findProduct(DbContext ctx, long familyId, long productId);
 
-    void deleteByProductId(DbContext ctx, long familyId, long productId);
+    /**
+     * Очищает список семьи, перенося продукты в историю покупок, и возвращает новую версию списка.
+     */
+    long deleteAllByFamilyId(DbContext ctx, long familyId);
 
-    boolean updateProductName(DbContext ctx, long familyId, long productId, String productName);
+    /**
+     * Снимок семьи старше версии {@code version} больше не используется: такую версию уже кто-то закоммитил.
+     */
+    void requireVersion(long familyId, long version);
 }
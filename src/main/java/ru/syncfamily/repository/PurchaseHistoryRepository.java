@@ -0,0 +1,29 @@
+package ru.syncfamily.repository;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+
+/**
+ * История покупок: строки, убранные из списка семьи. Таблица секционирована по месяцам архивации;
+ * секции по умолчанию нет, поэтому секция месяца должна быть создана до переноса в него строк.
+ * Перенос купленных строк заодно пополняет частоту покупок семьи, см. {@link ProductFrequencyRepository}.
+ */
+public interface PurchaseHistoryRepository {
+
+    /**
+     * Создаёт секции истории на {@code months} месяцев начиная с {@code from}, если их ещё нет.
+     */
+    void createPartitions(DbContext ctx, YearMonth from, int months);
+
+    /**
+     * Переносит в историю весь список семьи и возвращает число перенесённых строк.
+     * Версию списка и кэши не трогает — это дело вызывающего.
+     */
+    int archiveFamily(DbContext ctx, long familyId);
+
+    /**
+     * Переносит в историю до {@code limit} продуктов, купленных раньше {@code boughtBefore}, и увеличивает версию
+     * списков затронутых семей. Возвращает число перенесённых строк.
+     */
+    int archiveBought(DbContext ctx, OffsetDateTime boughtBefore, int limit);
+}
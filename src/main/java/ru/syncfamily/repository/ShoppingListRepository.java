@@ -0,0 +1,30 @@
+package ru.syncfamily.repository;
+
+import ru.syncfamily.service.model.FamilyList;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Изменения списка покупок за один запрос к базе: семья определяется по chatId,
+ * а в ответ сразу приходят новый список и члены семьи. Пустой результат — пользователь не найден.
+ * {@code expectedVersion} — версия списка, по которой пользователь принял решение (null — без проверки);
+ * если список успел измениться, изменение не выполняется, см. {@link FamilyList#conflict()}.
+ */
+public interface ShoppingListRepository {
+
+    Optional<FamilyList> toggleBought(DbContext ctx, long chatId, long productId, Long expectedVersion);
+
+    Optional<FamilyList> deleteProduct(DbContext ctx, long chatId, long productId, Long expectedVersion);
+
+    /**
+     * Добавляет продукты одним оператором. Названия, которые уже есть среди некупленных
+     * (без учёта регистра), и повторы внутри {@code products} пропускаются.
+     */
+    Optional<FamilyList> addProducts(DbContext ctx, long chatId, List<String> products);
+
+    /**
+     * Переименовывает продукт, который пользователь сейчас редактирует, и выходит из режима редактирования.
+     */
+    Optional<FamilyList> renameEditingProduct(DbContext ctx, long chatId, String productName);
+}
@@ -0,0 +1,28 @@
+package ru.syncfamily.repository.impl;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчик внешних инвалидаций кэшей (изменений, сделанных другими узлами кластера).
+ * Данные, прочитанные до очередной инвалидации, в кэш уже не кладутся: иначе чтение,
+ * начатое до чужого коммита, вернуло бы в кэш устаревшее состояние.
+ */
+@ApplicationScoped
+public class CacheEpoch {
+
+    private final AtomicLong epoch = new AtomicLong();
+
+    public long current() {
+        return epoch.get();
+    }
+
+    void advance() {
+        epoch.incrementAndGet();
+    }
+
+    boolean isCurrent(long observed) {
+        return epoch.get() == observed;
+    }
+}
@@ -0,0 +1,140 @@
+package ru.syncfamily.repository.impl;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.pubsub.PgSubscriber;
+import io.vertx.pgclient.PgConnectOptions;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.repository.DbContext;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Согласование нескольких экземпляров бота над одной схемой {@code family_sync}.
+ * <p>
+ * Владение семьёй берётся на время транзакции advisory-блокировкой по id семьи: изменения одной
+ * семьи с разных узлов выполняются строго по очереди, как внутри узла их упорядочивает полоса диспетчера.
+ * После изменения семьи узел публикует {@code NOTIFY} (уходит только при коммите), остальные узлы
+ * по нему сбрасывают снимок семьи, кэш её пользователей и частых покупок.
+ * <p>
+ * Без {@code sync-family.cluster.enabled} все методы ничего не делают.
+ */
+@Slf4j
+@ApplicationScoped
+@RequiredArgsConstructor
+public class ClusterSync {
+
+    static final String CHANNEL = "family_sync_changes";
+
+    static final String LOCK_FAMILY_OF_CHAT_SQL = """
+            select pg_advisory_xact_lock(family_id)
+            from family_sync.users
+            where chat_id = ?
+            """;
+
+    static final String LOCK_FAMILY_SQL = "select pg_advisory_xact_lock(?)";
+
+    static final String NOTIFY_SQL = "select pg_notify(?, ?)";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final FamilySnapshotCache snapshots;
+    private final UserCache userCache;
+    private final SuggestionCache suggestions;
+    private final CacheEpoch cacheEpoch;
+    private final Vertx vertx;
+
+    @ConfigProperty(name = "sync-family.cluster.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "sync-family.cluster.reconnect-interval", defaultValue = "1s")
+    Duration reconnectInterval;
+
+    @ConfigProperty(name = "quarkus.datasource.reactive.url")
+    Optional<String> url;
+
+    @ConfigProperty(name = "quarkus.datasource.username")
+    Optional<String> username;
+
+    @ConfigProperty(name = "quarkus.datasource.password")
+    Optional<String> password;
+
+    private PgSubscriber subscriber;
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Блокирует семью пользователя до конца транзакции. Вызывается до чтения списка,
+     * чтобы следующий оператор увидел все изменения, закоммиченные другими узлами.
+     */
+    public void lockFamilyOf(DbContext ctx, long chatId) {
+        if (enabled) {
+            ctx.dsl().resultQuery(LOCK_FAMILY_OF_CHAT_SQL, chatId).fetch();
+        }
+    }
+
+    public void lockFamily(DbContext ctx, long familyId) {
+        if (enabled) {
+            ctx.dsl().resultQuery(LOCK_FAMILY_SQL, familyId).fetch();
+        }
+    }
+
+    /**
+     * Сообщает остальным узлам, что семья изменилась. Postgres доставит уведомление только при коммите
+     * и склеит одинаковые уведомления одной транзакции.
+     */
+    public void publish(DbContext ctx, long familyId) {
+        if (enabled) {
+            ctx.dsl().resultQuery(NOTIFY_SQL, CHANNEL, payload(familyId)).fetch();
+        }
+    }
+
+    String payload(long familyId) {
+        return nodeId + ":" + familyId;
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        if (!enabled) {
+            return;
+        }
+        var options = PgConnectOptions.fromUri(url.orElseThrow(() ->
+                new IllegalStateException("Для режима кластера нужен quarkus.datasource.reactive.url")));
+        username.ifPresent(options::setUser);
+        password.ifPresent(options::setPassword);
+
+        subscriber = PgSubscriber.subscriber(vertx, options)
+                .reconnectPolicy(retries -> reconnectInterval.toMillis());
+        subscriber.channel(CHANNEL).handler(this::onNotification);
+        subscriber.connect().subscribe().with(
+                ignored -> log.info("Узел {} слушает изменения семей в канале {}", nodeId, CHANNEL),
+                e -> log.error("Не удалось подписаться на канал {}", CHANNEL, e));
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        if (subscriber != null) {
+            subscriber.closeAndForget();
+        }
+    }
+
+    private void onNotification(String payload) {
+        int separator = payload.lastIndexOf(':');
+        if (separator < 0 || payload.substring(0, separator).equals(nodeId)) {
+            return; // Собственные изменения уже применены к кэшам этого узла
+        }
+        long familyId = Long.parseLong(payload.substring(separator + 1));
+        cacheEpoch.advance();
+        snapshots.invalidate(familyId);
+        userCache.invalidateFamily(familyId);
+        suggestions.invalidate(familyId);
+        log.debug("Семья {} изменена другим узлом, кэши сброшены", familyId);
+    }
+}
@@ -4,12 +4,40 @@ import lombok.RequiredArgsConstructor;
 import org.jooq.DSLContext;
 import ru.syncfamily.repository.DbContext;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
 @RequiredArgsConstructor(staticName = "of")
 public class DbContextImpl implements DbContext {
     private final DSLContext ctx;
+    private final TransactionHooks hooks;
+    private final long cacheEpoch;
+    private final Map<Object, Object> locals = new HashMap<>();
 
     @Override
     public DSLContext dsl() {
         return ctx;
     }
+
+    @Override
+    public void afterCommit(Runnable action) {
+        hooks.afterCommit(action);
+    }
+
+    @Override
+    public void afterRollback(Runnable action) {
+        hooks.afterRollback(action);
+    }
+
+    @Override
+    public long cacheEpoch() {
+        return cacheEpoch;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T local(Object key, Supplier<T> initial) {
+        return (T) locals.computeIfAbsent(key, ignored -> initial.get());
+    }
 }
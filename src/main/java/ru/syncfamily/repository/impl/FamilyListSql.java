@@ -0,0 +1,307 @@
+package ru.syncfamily.repository.impl;
+
+import ru.syncfamily.service.model.FamilyList;
+import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Запросы изменения списка покупок, общие для JDBC и реактивного клиента.
+ * <p>
+ * Каждый запрос — один оператор с модифицирующими CTE. Изменения CTE не видны соседним CTE
+ * того же оператора, поэтому новый список собирается явно: строки семьи без затронутых плюс то,
+ * что вернул RETURNING. Результат — строки двух видов (продукт / член семьи) в одной выборке.
+ * <p>
+ * Первый параметр каждого запроса — ожидаемая версия списка семьи ({@code families.version}) или null.
+ * Все изменяющие CTE зависят от {@code gate}: он увеличивает версию строкой {@code update families ... where version = ?}.
+ * Под READ COMMITTED этот update ждёт параллельное изменение семьи и перепроверяет версию уже по его результату,
+ * поэтому из двух изменений по одной версии проходит одно. Сравнивается и версия снимка оператора: иначе
+ * прошедший после ожидания запрос вернул бы список, снятый до чужого изменения. Если версия не совпала,
+ * запрос ничего не меняет и возвращает список снимка с признаком {@code conflict}; в каждой строке результата —
+ * версия после запроса.
+ * Параметры записаны как {@code ?} (JDBC); для реактивного клиента см. {@link #numbered}.
+ */
+final class FamilyListSql {
+
+    static final String KIND = "kind";
+    static final String PRODUCT = "product";
+    static final String FAMILY_VERSION = "family_version";
+    static final String CONFLICT = "conflict";
+
+    /**
+     * Сколько раз выполнять изменение без ожидаемой версии, если его обгоняют параллельные изменения семьи.
+     */
+    static final int MAX_UNVERSIONED_ATTEMPTS = 5;
+
+    private static final String ACTOR = """
+            with actor as (
+                select u.chat_id,
+                       u.family_id,
+                       u.editing_product_id,
+                       f.version,
+                       f.version = coalesce(?::int8, f.version) as expected
+                from family_sync.users u
+                         join family_sync.families f on f.id = u.family_id
+                where u.chat_id = ?
+            ),
+            gate as (
+                update family_sync.families f
+                set version = f.version + 1
+                from actor a
+                where f.id = a.family_id
+                  and a.expected
+                  and f.version = a.version
+                returning f.version
+            ),
+            """;
+
+    private static final String FAMILY_MEMBERS = """
+            members as (
+                select u.*
+                from family_sync.users u
+                         join actor a on u.family_id = a.family_id
+            )
+            """;
+
+    // users.editing_product_id обнуляется внешним ключом, но в этом же операторе этого ещё не видно
+    private static final String MEMBERS_WITHOUT_DELETED = """
+            members as (
+                select u.chat_id,
+                       u.family_id,
+                       u.username,
+                       u.last_message_id,
+                       u.shopping_list_edit_mode,
+                       case when u.editing_product_id in (select id from deleted) then null
+                            else u.editing_product_id end as editing_product_id,
+                       u.page_after_bought,
+                       u.page_after_created_at,
+                       u.page_after_id
+                from family_sync.users u
+                         join actor a on u.family_id = a.family_id
+            )
+            """;
+
+    private static final String RESULT = """
+            , list_version as (
+                select coalesce((select version from gate), a.version) as family_version,
+                       not exists (select 1 from gate)                  as conflict
+                from actor a
+            )
+            select 'product'                  as kind,
+                   p.id,
+                   p.product_name,
+                   p.is_bought,
+                   p.created_at,
+                   p.family_id,
+                   null::int8                 as chat_id,
+                   null::text                 as username,
+                   null::int4                 as last_message_id,
+                   null::boolean              as shopping_list_edit_mode,
+                   null::int8                 as editing_product_id,
+                   null::boolean              as page_after_bought,
+                   null::timestamptz          as page_after_created_at,
+                   null::int8                 as page_after_id,
+                   v.family_version,
+                   v.conflict
+            from products p
+                     cross join list_version v
+            union all
+            select 'member',
+                   null,
+                   null,
+                   null,
+                   null,
+                   m.family_id,
+                   m.chat_id,
+                   m.username,
+                   m.last_message_id,
+                   m.shopping_list_edit_mode,
+                   m.editing_product_id,
+                   m.page_after_bought,
+                   m.page_after_created_at,
+                   m.page_after_id,
+                   v.family_version,
+                   v.conflict
+            from members m
+                     cross join list_version v
+            """;
+
+    // Вернуть в список купленный продукт, который там уже есть некупленным, нельзя (уникальный индекс):
+    // такая строка сливается с некупленной — удаляется
+    static final String TOGGLE_BOUGHT = QueryMetricsListener.named("toggle_bought", ACTOR + """
+            target as (
+                select s.id,
+                       s.is_bought and exists (
+                           select 1
+                           from family_sync.shopping_list d
+                           where d.family_id = s.family_id
+                             and not d.is_bought
+                             and lower(btrim(d.product_name)) = lower(btrim(s.product_name))
+                       ) as duplicate
+                from family_sync.shopping_list s
+                         join actor a on s.family_id = a.family_id
+                where exists (select 1 from gate)
+                  and s.id = ?
+            ),
+            changed as (
+                update family_sync.shopping_list s
+                set is_bought = not s.is_bought,
+                    bought_at = case when s.is_bought then null else now() end
+                from target t
+                where s.id = t.id
+                  and not t.duplicate
+                returning s.*
+            ),
+            deleted as (
+                delete from family_sync.shopping_list s
+                using target t
+                where s.id = t.id
+                  and t.duplicate
+                returning s.id
+            ),
+            products as (
+                select s.*
+                from family_sync.shopping_list s
+                         join actor a on s.family_id = a.family_id
+                where s.id not in (select id from changed)
+                  and s.id not in (select id from deleted)
+                union all
+                select * from changed
+            ),
+            """ + MEMBERS_WITHOUT_DELETED + RESULT);
+
+    static final String DELETE_PRODUCT = QueryMetricsListener.named("delete_product", ACTOR + """
+            deleted as (
+                delete from family_sync.shopping_list s
+                using actor a
+                where s.family_id = a.family_id
+                  and exists (select 1 from gate)
+                  and s.id = ?
+                returning s.id
+            ),
+            products as (
+                select s.*
+                from family_sync.shopping_list s
+                         join actor a on s.family_id = a.family_id
+                where s.id not in (select id from deleted)
+            ),
+            """ + MEMBERS_WITHOUT_DELETED + RESULT);
+
+    // Повторы в самом тексте отсекает distinct on, совпадения с уже некупленными — уникальный индекс
+    static final String ADD_PRODUCTS = QueryMetricsListener.named("add_products", ACTOR + """
+            inserted as (
+                insert into family_sync.shopping_list (family_id, product_name)
+                select a.family_id, n.name
+                from actor a
+                         cross join (
+                    select distinct on (lower(btrim(u.name))) u.name, u.ord
+                    from unnest(?::text[]) with ordinality as u(name, ord)
+                    order by lower(btrim(u.name)), u.ord
+                ) n
+                where exists (select 1 from gate)
+                order by n.ord
+                on conflict do nothing
+                returning *
+            ),
+            products as (
+                select s.*
+                from family_sync.shopping_list s
+                         join actor a on s.family_id = a.family_id
+                union all
+                select * from inserted
+            ),
+            """ + FAMILY_MEMBERS + RESULT);
+
+    // Если новое имя уже занято другим некупленным продуктом, переименование пропускается,
+    // но режим редактирования всё равно снимается
+    static final String RENAME_EDITING_PRODUCT = QueryMetricsListener.named("rename_editing_product", ACTOR + """
+            target as (
+                select s.id,
+                       n.name,
+                       s.is_bought or not exists (
+                           select 1
+                           from family_sync.shopping_list d
+                           where d.family_id = s.family_id
+                             and not d.is_bought
+                             and d.id <> s.id
+                             and lower(btrim(d.product_name)) = lower(btrim(n.name))
+                       ) as free
+                from family_sync.shopping_list s
+                         join actor a on s.family_id = a.family_id and s.id = a.editing_product_id
+                         cross join (select ?::text as name) n
+                where exists (select 1 from gate)
+            ),
+            renamed as (
+                update family_sync.shopping_list s
+                set product_name = t.name
+                from target t
+                where s.id = t.id
+                  and t.free
+                returning s.*
+            ),
+            released as (
+                update family_sync.users u
+                set editing_product_id = null
+                from actor a
+                where u.chat_id = a.chat_id
+                  and exists (select 1 from target)
+                returning u.*
+            ),
+            products as (
+                select s.*
+                from family_sync.shopping_list s
+                         join actor a on s.family_id = a.family_id
+                where s.id not in (select id from renamed)
+                union all
+                select * from renamed
+            ),
+            members as (
+                select u.*
+                from family_sync.users u
+                         join actor a on u.family_id = a.family_id
+                where u.chat_id not in (select chat_id from released)
+                union all
+                select * from released
+            )
+            """ + RESULT);
+
+    private FamilyListSql() {
+    }
+
+    /**
+     * Переписывает параметры {@code ?} в нумерованные {@code $1, $2, ...} для реактивного клиента Postgres.
+     */
+    static String numbered(String sql) {
+        var result = new StringBuilder(sql.length() + 8);
+        int index = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                result.append('$').append(++index);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Собирает результат запроса: пустой, если инициатор не найден (изменение тогда тоже не выполнялось).
+     */
+    static Optional<FamilyList> assemble(long chatId, List<Product> products, List<User> members,
+                                         long version, boolean conflict) {
+        var actor = members.stream()
+                .filter(member -> member.getChatId() == chatId)
+                .findFirst();
+        if (actor.isEmpty()) {
+            return Optional.empty();
+        }
+        var ordered = new ArrayList<>(products);
+        ordered.sort(FamilySnapshotCache.PRODUCT_ORDER);
+        return Optional.of(new FamilyList(actor.get().copy(), List.copyOf(ordered), List.copyOf(members),
+                version, conflict));
+    }
+}
@@ -1,11 +1,15 @@
 package ru.syncfamily.repository.impl;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
 import ru.syncfamily.repository.DbContext;
 import ru.syncfamily.repository.FamilyRepository;
+import ru.syncfamily.service.model.ProductKey;
 import ru.syncfamily.service.model.User;
 
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,8 +17,13 @@ import static ru.syncfamily.jooq.Tables.FAMILIES;
 import static ru.syncfamily.jooq.Tables.USERS;
 
 @ApplicationScoped
+@RequiredArgsConstructor
 public class FamilyRepositoryImpl implements FamilyRepository {
 
+    private final UserCache userCache;
+    private final FamilySnapshotCache snapshots;
+    private final ClusterSync clusterSync;
+
     @Override
     public User createFamily(DbContext ctx, long chatId, String userName) {
 
@@ -55,17 +64,39 @@ public class FamilyRepositoryImpl implements FamilyRepository {
     @Override
     public Optional<User> getFamilyMemberByChatId(DbContext ctx, long chatId) {
 
-        return ctx.dsl().selectFrom(USERS)
+        var cached = userCache.get(chatId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        var user = ctx.dsl().selectFrom(USERS)
                 .where(USERS.CHAT_ID.eq(chatId))
                 .fetchOptionalInto(User.class);
+        user.ifPresent(found -> {
+            var copy = found.copy();
+            ctx.afterCommit(() -> userCache.put(copy, ctx.cacheEpoch()));
+        });
+        return user;
+    }
+
+    @Override
+    public Optional<User> findCachedMember(long chatId) {
+        return userCache.get(chatId);
     }
 
     @Override
     public List<User> getFamilyMembersByFamilyId(DbContext ctx, long familyId) {
 
-        return ctx.dsl().selectFrom(USERS)
+        var cached = snapshots.members(ctx, familyId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        var members = ctx.dsl().selectFrom(USERS)
                 .where(USERS.FAMILY_ID.eq(familyId))
                 .fetchInto(User.class);
+        snapshots.loadedMembers(ctx, familyId, members);
+        return members;
     }
 
     @Override
@@ -99,6 +130,23 @@ public class FamilyRepositoryImpl implements FamilyRepository {
                 .toList();
 
         ctx.dsl().batch(batchQueries).execute();
+
+        // Пользователи прочитаны отправителем вне полос семей: режим, страница и редактируемый продукт
+        // в них могли устареть, поэтому в кэши попадает только новый lastMessageId
+        var sent = users.stream()
+                .map(User::copy)
+                .toList();
+        ctx.afterCommit(() -> sent.forEach(user -> {
+            userCache.lastMessageIdChanged(user.getChatId(), user.getLastMessageId());
+            if (user.getFamilyId() != null) {
+                snapshots.lastMessageIdChanged(user.getFamilyId(), user.getChatId(), user.getLastMessageId());
+            }
+        }));
+        users.stream()
+                .map(User::getFamilyId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(familyId -> clusterSync.publish(ctx, familyId));
     }
 
     @Override
@@ -108,6 +156,7 @@ public class FamilyRepositoryImpl implements FamilyRepository {
                 .set(USERS.SHOPPING_LIST_EDIT_MODE, true)
                 .where(USERS.CHAT_ID.eq(user.getChatId()))
                 .execute();
+        userChanged(ctx, user);
         return user;
     }
 
@@ -118,6 +167,7 @@ public class FamilyRepositoryImpl implements FamilyRepository {
                 .set(USERS.SHOPPING_LIST_EDIT_MODE, false)
                 .where(USERS.CHAT_ID.eq(user.getChatId()))
                 .execute();
+        userChanged(ctx, user);
         return user;
     }
 
@@ -128,6 +178,8 @@ public class FamilyRepositoryImpl implements FamilyRepository {
                 .set(USERS.EDITING_PRODUCT_ID, productId)
                 .where(USERS.CHAT_ID.eq(user.getChatId()))
                 .execute();
+        user.setEditingProductId(productId);
+        userChanged(ctx, user);
     }
 
     @Override
@@ -137,16 +189,68 @@ public class FamilyRepositoryImpl implements FamilyRepository {
                 .setNull(USERS.EDITING_PRODUCT_ID)
                 .where(USERS.CHAT_ID.eq(user.getChatId()))
                 .execute();
+        user.setEditingProductId(null);
+        userChanged(ctx, user);
+    }
+
+    @Override
+    public User setListPage(DbContext ctx, User user, ProductKey after) {
+        user.changePage(after);
+        ctx.dsl().update(USERS)
+                .set(USERS.PAGE_AFTER_BOUGHT, user.getPageAfterBought())
+                .set(USERS.PAGE_AFTER_CREATED_AT, user.getPageAfterCreatedAt() == null ? null
+                        : user.getPageAfterCreatedAt().atZone(ZoneId.systemDefault()).toOffsetDateTime())
+                .set(USERS.PAGE_AFTER_ID, user.getPageAfterId())
+                .where(USERS.CHAT_ID.eq(user.getChatId()))
+                .execute();
+        userChanged(ctx, user);
+        return user;
     }
 
     private User upsertUserFamily(DbContext ctx, long chatId, Long familyId, String userName) {
-        return ctx.dsl().insertInto(USERS)
+        if (clusterSync.enabled()) {
+            // Другие узлы должны убрать пользователя и из снимка прежней семьи
+            ctx.dsl().select(USERS.FAMILY_ID)
+                    .from(USERS)
+                    .where(USERS.CHAT_ID.eq(chatId))
+                    .fetchOptional(USERS.FAMILY_ID)
+                    .filter(previous -> !previous.equals(familyId))
+                    .ifPresent(previous -> clusterSync.publish(ctx, previous));
+        }
+        var user = ctx.dsl().insertInto(USERS)
                 .set(USERS.CHAT_ID, chatId)
                 .set(USERS.FAMILY_ID, familyId)
                 .set(USERS.USERNAME, userName)
                 .onDuplicateKeyUpdate()
                 .set(USERS.FAMILY_ID, familyId)
+                // Курсор страницы указывает на продукт прежней семьи: в новой семье список открывается с начала
+                .setNull(USERS.PAGE_AFTER_BOUGHT)
+                .setNull(USERS.PAGE_AFTER_CREATED_AT)
+                .setNull(USERS.PAGE_AFTER_ID)
                 .returning()
                 .fetchOneInto(User.class);
+        // Пользователь мог перейти из другой семьи
+        snapshots.memberMoved(ctx, user);
+        userChanged(ctx, user);
+        return user;
+    }
+
+    private void userChanged(DbContext ctx, User user) {
+        cacheUser(ctx, user);
+        if (user.getFamilyId() != null) {
+            clusterSync.publish(ctx, user.getFamilyId());
+        }
+    }
+
+    /**
+     * Кэш пользователей обновляется только после коммита. Изменение снимка семьи видно этой транзакции
+     * сразу, а в общий снимок попадает тоже после коммита.
+     */
+    private void cacheUser(DbContext ctx, User user) {
+        var copy = user.copy();
+        userCache.invalidate(copy.getChatId());
+        ctx.afterCommit(() -> userCache.put(copy, ctx.cacheEpoch()));
+
+        snapshots.memberChanged(ctx, copy);
     }
 }
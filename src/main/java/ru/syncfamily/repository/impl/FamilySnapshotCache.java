@@ -0,0 +1,320 @@
+package ru.syncfamily.repository.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * Снимок семьи в памяти: упорядоченный список покупок и члены семьи.
+ * Источник истины — база. Изменения транзакции копятся в её {@link DbContext} и видны только ей
+ * (чтения с контекстом накладывают их поверх общего снимка), а в общий снимок попадают после коммита:
+ * другие полосы и отправитель outbox никогда не видят незакоммиченного состояния, а откатывать нечего.
+ * Версия снимка — версия списка семьи ({@code families.version}), по которой снят список;
+ * более старое состояние не заменяет более новое.
+ */
+@ApplicationScoped
+@RequiredArgsConstructor
+public class FamilySnapshotCache {
+
+    /**
+     * Тот же порядок, что и в {@link ProductRepositoryImpl#getAllProductsOrdered}.
+     */
+    static final Comparator<Product> PRODUCT_ORDER = Comparator.comparing(Product::isBought)
+            .thenComparing(Product::getCreatedAt, Comparator.nullsFirst(Comparator.reverseOrder()))
+            .thenComparing(Product::getId, Comparator.reverseOrder());
+
+    @ConfigProperty(name = "sync-family.cache.families.max-weight", defaultValue = "200000")
+    long maxWeight;
+
+    @ConfigProperty(name = "sync-family.cache.families.expire-after-access", defaultValue = "30m")
+    Duration expireAfterAccess;
+
+    private final CacheEpoch cacheEpoch;
+
+    private Cache<Long, Snapshot> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                // Вес снимка — число строк в нём: ограничивает память, а не количество семей
+                .maximumWeight(maxWeight)
+                .weigher((Long familyId, Snapshot snapshot) -> snapshot.weight())
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    /**
+     * Список из общего снимка: только закоммиченное состояние.
+     */
+    public Optional<List<Product>> products(long familyId) {
+        return Optional.ofNullable(cache.getIfPresent(familyId))
+                .map(Snapshot::products);
+    }
+
+    /**
+     * Список, каким его видит транзакция {@code ctx}: общий снимок с её незакоммиченными изменениями.
+     */
+    public Optional<List<Product>> products(DbContext ctx, long familyId) {
+        return Optional.ofNullable(view(ctx, familyId))
+                .map(Snapshot::products);
+    }
+
+    /**
+     * Члены семьи отдаются копиями: обработчики меняют объекты User.
+     */
+    public Optional<List<User>> members(DbContext ctx, long familyId) {
+        return Optional.ofNullable(view(ctx, familyId))
+                .map(Snapshot::members)
+                .map(members -> members.stream().map(User::copy).toList());
+    }
+
+    /**
+     * Список вместе с версией, по которой он снят, — одним чтением снимка.
+     */
+    public Optional<VersionedProducts> versionedProducts(DbContext ctx, long familyId) {
+        return Optional.ofNullable(view(ctx, familyId))
+                .filter(snapshot -> snapshot.products() != null)
+                .map(snapshot -> new VersionedProducts(snapshot.version(), snapshot.products()));
+    }
+
+    /**
+     * Список, прочитанный из базы. Если транзакция уже меняла семью, он содержит её незакоммиченные
+     * изменения и ждёт коммита вместе с ними; иначе сразу кладётся в общий снимок.
+     */
+    public void loadedProducts(DbContext ctx, long familyId, long version, List<Product> products) {
+        var copy = List.copyOf(products);
+        change(ctx, familyId, (id, current) -> current == null
+                ? new Snapshot(version, copy, null)
+                : new Snapshot(version, copy, current.members()), true);
+    }
+
+    public void loadedMembers(DbContext ctx, long familyId, List<User> members) {
+        var copies = members.stream().map(User::copy).toList();
+        change(ctx, familyId, (id, current) -> current == null
+                ? new Snapshot(0, null, copies)
+                : new Snapshot(current.version(), current.products(), copies), true);
+    }
+
+    /**
+     * Полностью заменяет снимок состоянием версии {@code version}, которое вернул изменяющий запрос транзакции.
+     */
+    public void replaced(DbContext ctx, long familyId, long version, List<Product> products, List<User> members) {
+        change(ctx, familyId, replacement(version, products, members), false);
+    }
+
+    /**
+     * То же для уже закоммиченного изменения (реактивный клиент кладёт результат после коммита).
+     */
+    public void replaced(long familyId, long version, List<Product> products, List<User> members, long epoch) {
+        if (isStale(familyId, epoch)) {
+            return;
+        }
+        cache.asMap().compute(familyId, replacement(version, products, members));
+    }
+
+    public void productsCleared(DbContext ctx, long familyId, long version) {
+        change(ctx, familyId, (id, current) -> {
+            if (current == null || current.products() == null) {
+                return current;
+            }
+            return new Snapshot(version, List.of(), current.members());
+        }, false);
+    }
+
+    /**
+     * Вытесняет снимок, если он снят по версии старше {@code version}: следующее чтение пойдёт в базу.
+     */
+    public void requireVersion(long familyId, long version) {
+        cache.asMap().computeIfPresent(familyId, (id, snapshot) ->
+                snapshot.products() != null && snapshot.version() < version ? null : snapshot);
+    }
+
+    /**
+     * Заменяет (или добавляет) члена семьи в снимке его семьи. Версию списка не меняет.
+     */
+    public void memberChanged(DbContext ctx, User user) {
+        if (user.getFamilyId() == null) {
+            return;
+        }
+        var copy = user.copy();
+        change(ctx, user.getFamilyId(), (id, snapshot) -> {
+            if (snapshot == null || snapshot.members() == null) {
+                return snapshot;
+            }
+            var members = new ArrayList<User>();
+            snapshot.members().stream()
+                    .filter(member -> !member.getChatId().equals(copy.getChatId()))
+                    .forEach(members::add);
+            members.add(copy);
+            return new Snapshot(snapshot.version(), snapshot.products(), List.copyOf(members));
+        }, false);
+    }
+
+    /**
+     * Меняет у члена семьи в снимке только lastMessageId. Вызывается после коммита.
+     */
+    public void lastMessageIdChanged(long familyId, long chatId, Integer lastMessageId) {
+        cache.asMap().computeIfPresent(familyId, (id, snapshot) -> {
+            if (snapshot.members() == null) {
+                return snapshot;
+            }
+            var members = snapshot.members().stream()
+                    .map(member -> {
+                        if (member.getChatId() != chatId) {
+                            return member;
+                        }
+                        var copy = member.copy();
+                        copy.setLastMessageId(lastMessageId);
+                        return copy;
+                    })
+                    .toList();
+            return new Snapshot(snapshot.version(), snapshot.products(), members);
+        });
+    }
+
+    /**
+     * Пользователь сменил семью: убираем его из снимков всех остальных семей.
+     */
+    public void memberMoved(DbContext ctx, User user) {
+        long chatId = user.getChatId();
+        Long familyId = user.getFamilyId();
+        pending(ctx).add(new PendingChange(null, (id, snapshot) -> {
+            if (snapshot == null || snapshot.members() == null || id.equals(familyId)) {
+                return snapshot;
+            }
+            var members = snapshot.members().stream()
+                    .filter(member -> member.getChatId() != chatId)
+                    .toList();
+            return members.size() == snapshot.members().size()
+                    ? snapshot
+                    : new Snapshot(snapshot.version(), snapshot.products(), members);
+        }));
+    }
+
+    public void invalidate(long familyId) {
+        cache.invalidate(familyId);
+    }
+
+    private static BiFunction<Long, Snapshot, Snapshot> replacement(long version, List<Product> products,
+                                                                   List<User> members) {
+        var productsCopy = List.copyOf(products);
+        var copies = members.stream().map(User::copy).toList();
+        return (id, current) -> current != null && current.products() != null && current.version() > version
+                ? current // Результат более раннего изменения пришёл позже — снимок уже новее
+                : new Snapshot(version, productsCopy, copies);
+    }
+
+    /**
+     * Изменение снимка транзакцией. Загрузку из базы ({@code load}) семьи, которую транзакция не меняла,
+     * можно сразу класть в общий снимок; всё остальное ждёт коммита.
+     */
+    private void change(DbContext ctx, long familyId, BiFunction<Long, Snapshot, Snapshot> change, boolean load) {
+        var pending = pending(ctx);
+        if (load && !pending.touches(familyId)) {
+            if (!isStale(familyId, ctx.cacheEpoch())) {
+                cache.asMap().compute(familyId, change::apply);
+            }
+            return;
+        }
+        pending.add(new PendingChange(familyId, change));
+    }
+
+    private Snapshot view(DbContext ctx, long familyId) {
+        var snapshot = cache.getIfPresent(familyId);
+        for (var change : pending(ctx).changes) {
+            if (change.familyId() == null || change.familyId() == familyId) {
+                snapshot = change.apply().apply(familyId, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    private PendingChanges pending(DbContext ctx) {
+        return ctx.local(FamilySnapshotCache.class, () -> {
+            var pending = new PendingChanges();
+            ctx.afterCommit(() -> publish(pending, ctx.cacheEpoch()));
+            return pending;
+        });
+    }
+
+    /**
+     * Переносит изменения закоммиченной транзакции в общий снимок в том же порядке.
+     * Если за время транзакции пришла внешняя инвалидация, затронутые семьи просто вытесняются.
+     */
+    private void publish(PendingChanges pending, long epoch) {
+        boolean stale = !cacheEpoch.isCurrent(epoch);
+        for (var change : pending.changes) {
+            if (change.familyId() == null) {
+                cache.asMap().replaceAll(change.apply()::apply);
+            } else if (stale) {
+                cache.invalidate(change.familyId());
+            } else {
+                cache.asMap().compute(change.familyId(), change.apply()::apply);
+            }
+        }
+    }
+
+    /**
+     * Данные прочитаны до внешней инвалидации: не кладём их и на всякий случай вытесняем снимок.
+     */
+    private boolean isStale(long familyId, long epoch) {
+        if (cacheEpoch.isCurrent(epoch)) {
+            return false;
+        }
+        cache.invalidate(familyId);
+        return true;
+    }
+
+    public record VersionedProducts(long version, List<Product> products) {
+    }
+
+    /**
+     * Неизменяемый снимок; null в products или members — эта часть ещё не загружена.
+     */
+    private record Snapshot(long version, List<Product> products, List<User> members) {
+
+        int weight() {
+            return 1 + (products == null ? 0 : products.size()) + (members == null ? 0 : members.size());
+        }
+    }
+
+    /**
+     * Изменение снимка семьи {@code familyId}; null — изменение снимков всех семей.
+     */
+    private record PendingChange(Long familyId, BiFunction<Long, Snapshot, Snapshot> apply) {
+    }
+
+    /**
+     * Незакоммиченные изменения снимков одной транзакции.
+     */
+    private static final class PendingChanges {
+
+        private final List<PendingChange> changes = new ArrayList<>();
+        private final LinkedHashSet<Long> families = new LinkedHashSet<>();
+
+        void add(PendingChange change) {
+            changes.add(change);
+            if (change.familyId() != null) {
+                families.add(change.familyId());
+            }
+        }
+
+        boolean touches(long familyId) {
+            return families.contains(familyId);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.syncfamily.repository.impl;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import lombok.RequiredArgsConstructor;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.DuplicateUpdateException;
+import ru.syncfamily.repository.FamilyListStore;
+import ru.syncfamily.repository.OutboxRepository;
+import ru.syncfamily.repository.PostgresDb;
+import ru.syncfamily.repository.ProcessedUpdateRepository;
+import ru.syncfamily.repository.ShoppingListRepository;
+import ru.syncfamily.service.model.FamilyList;
+import ru.syncfamily.service.model.ListBroadcast;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * {@link FamilyListStore} поверх блокирующих репозиториев: каждая операция — {@link PostgresDb#async}.
+ */
+@ApplicationScoped
+@Typed(JdbcFamilyListStore.class)
+@RequiredArgsConstructor
+public class JdbcFamilyListStore implements FamilyListStore {
+
+    private final PostgresDb db;
+    private final ShoppingListRepository shoppingListRepository;
+    private final OutboxRepository outboxRepository;
+    private final ProcessedUpdateRepository processedUpdateRepository;
+
+    @Override
+    public Uni<Optional<FamilyList>> toggleBought(long updateId, long chatId, long productId, Long expectedVersion,
+                                                  Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return change(updateId, ctx -> shoppingListRepository.toggleBought(ctx, chatId, productId, expectedVersion), broadcast);
+    }
+
+    @Override
+    public Uni<Optional<FamilyList>> deleteProduct(long updateId, long chatId, long productId, Long expectedVersion,
+                                                   Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return change(updateId, ctx -> shoppingListRepository.deleteProduct(ctx, chatId, productId, expectedVersion), broadcast);
+    }
+
+    @Override
+    public Uni<Optional<FamilyList>> addProducts(long updateId, long chatId, List<String> products,
+                                                 Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return change(updateId, ctx -> shoppingListRepository.addProducts(ctx, chatId, products), broadcast);
+    }
+
+    @Override
+    public Uni<Optional<FamilyList>> renameEditingProduct(long updateId, long chatId, String productName,
+                                                          Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return change(updateId, ctx -> shoppingListRepository.renameEditingProduct(ctx, chatId, productName), broadcast);
+    }
+
+    private Uni<Optional<FamilyList>> change(long updateId, Function<DbContext, Optional<FamilyList>> statement,
+                                             Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return db.async(ctx -> {
+            var list = statement.apply(ctx);
+            list.filter(changed -> !changed.conflict())
+                    .ifPresent(changed -> {
+                        if (!processedUpdateRepository.claim(ctx, updateId)) {
+                            throw new DuplicateUpdateException(updateId);
+                        }
+                        broadcast.apply(changed)
+                                .ifPresent(intent -> outboxRepository.add(ctx, changed.familyId(), changed.version(), intent));
+                    });
+            return list;
+        });
+    }
+}
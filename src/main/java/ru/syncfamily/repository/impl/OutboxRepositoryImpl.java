@@ -0,0 +1,108 @@
+package ru.syncfamily.repository.impl;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.OutboxRepository;
+import ru.syncfamily.service.model.ListBroadcast;
+import ru.syncfamily.service.model.OutboxEntry;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static ru.syncfamily.jooq.Tables.OUTBOX;
+
+@ApplicationScoped
+public class OutboxRepositoryImpl implements OutboxRepository {
+
+    /**
+     * Запись и строка аренды её семьи (если её ещё нет). Общий с реактивным клиентом, см. {@link ReactiveFamilyListStore}.
+     */
+    static final String ADD_SQL = """
+            with lease as (
+                insert into family_sync.outbox_lease (family_id)
+                values (?)
+                on conflict do nothing
+            )
+            insert into family_sync.outbox (family_id, family_version, repost, markdown, header)
+            values (?, ?, ?, ?, ?)
+            """;
+
+    // Блокировка строки аренды делает проверку аренды атомарной: семью, которую сейчас берёт другой отправитель,
+    // skip locked пропустит, а уже взятую он не пройдёт по claimed_until — update перепроверяет условие
+    // по закоммиченной строке. Поэтому одну семью не перерисуют два узла наперегонки
+    private static final String CLAIM_SQL = QueryMetricsListener.named("outbox_claim", """
+            with free as (
+                select l.family_id
+                from family_sync.outbox_lease l
+                where l.claimed_until < ?
+                  and exists (
+                    select 1
+                    from family_sync.outbox o
+                    where o.family_id = l.family_id
+                      and o.processed_at is null
+                )
+                order by l.claimed_until
+                limit ?
+                for update skip locked
+            ),
+            claimed as (
+                update family_sync.outbox_lease l
+                set claimed_until = ?
+                from free f
+                where l.family_id = f.family_id
+                returning l.family_id
+            )
+            select o.id, o.family_id, o.family_version, o.repost, o.markdown, o.header
+            from family_sync.outbox o
+                     join claimed c on c.family_id = o.family_id
+            where o.processed_at is null
+            order by o.id
+            """);
+
+    private static final String RELEASE_SQL = """
+            update family_sync.outbox_lease
+            set claimed_until = '-infinity'
+            where family_id = ?
+            """;
+
+    @Override
+    public void add(DbContext ctx, long familyId, long familyVersion, ListBroadcast broadcast) {
+        ctx.dsl().execute(ADD_SQL, familyId,
+                familyId, familyVersion, broadcast.repost(), broadcast.markdown(), broadcast.header());
+    }
+
+    @Override
+    public List<OutboxEntry> claim(DbContext ctx, int families, Duration lease) {
+        var now = OffsetDateTime.now();
+        return ctx.dsl().resultQuery(CLAIM_SQL, now, families, now.plus(lease))
+                .fetch(record -> new OutboxEntry(
+                        record.get(OUTBOX.ID),
+                        record.get(OUTBOX.FAMILY_ID),
+                        record.get(OUTBOX.FAMILY_VERSION),
+                        new ListBroadcast(record.get(OUTBOX.REPOST), record.get(OUTBOX.MARKDOWN), record.get(OUTBOX.HEADER))));
+    }
+
+    @Override
+    public void markProcessed(DbContext ctx, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ctx.dsl().update(OUTBOX)
+                .set(OUTBOX.PROCESSED_AT, OffsetDateTime.now())
+                .where(OUTBOX.ID.in(ids))
+                .execute();
+    }
+
+    @Override
+    public void release(DbContext ctx, long familyId) {
+        ctx.dsl().execute(RELEASE_SQL, familyId);
+    }
+
+    @Override
+    public int deleteProcessedBefore(DbContext ctx, OffsetDateTime before) {
+        return ctx.dsl().deleteFrom(OUTBOX)
+                .where(OUTBOX.PROCESSED_AT.lt(before))
+                .execute();
+    }
+}
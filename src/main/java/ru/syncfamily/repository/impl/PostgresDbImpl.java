@@ -1,11 +1,11 @@
 package ru.syncfamily.repository.impl;
 
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.RequiredArgsConstructor;
 import org.jooq.DSLContext;
+import ru.syncfamily.config.BlockingExecutor;
 import ru.syncfamily.repository.DbContext;
 import ru.syncfamily.repository.PostgresDb;
 
@@ -16,11 +16,29 @@ import java.util.function.Function;
 public class PostgresDbImpl implements PostgresDb {
 
     private final DSLContext dsl;
+    private final BlockingExecutor blockingExecutor;
+    private final CacheEpoch cacheEpoch;
 
     @Override
     public <T> Uni<T> async(Function<DbContext, T> func) {
-        return Uni.createFrom().item(() -> dsl.transactionResult(configuration ->
-                        func.apply(DbContextImpl.of(configuration.dsl()))))
-                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        // Разрешение на соединение держим только на время транзакции: дальнейшая цепочка
+        // (например, синхронная отправка в Telegram) продолжается уже без него
+        return Uni.createFrom().item(() -> blockingExecutor.withDbPermit(() -> transaction(func)))
+                .runSubscriptionOn(blockingExecutor.executor());
+    }
+
+    private <T> T transaction(Function<DbContext, T> func) {
+        var hooks = new TransactionHooks();
+        long epoch = cacheEpoch.current();
+        T result;
+        try {
+            result = dsl.transactionResult(configuration ->
+                    func.apply(DbContextImpl.of(configuration.dsl(), hooks, epoch)));
+        } catch (RuntimeException e) {
+            hooks.rolledBack();
+            throw e;
+        }
+        hooks.committed();
+        return result;
     }
 }
@@ -0,0 +1,39 @@
+package ru.syncfamily.repository.impl;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.ProcessedUpdateRepository;
+
+import java.time.OffsetDateTime;
+
+import static ru.syncfamily.jooq.Tables.PROCESSED_UPDATES;
+
+@ApplicationScoped
+public class ProcessedUpdateRepositoryImpl implements ProcessedUpdateRepository {
+
+    /**
+     * Общий с реактивным клиентом, см. {@link ReactiveFamilyListStore}.
+     */
+    static final String CLAIM_SQL = """
+            insert into family_sync.processed_updates (update_id)
+            values (?)
+            on conflict do nothing
+            """;
+
+    @Override
+    public boolean claim(DbContext ctx, long updateId) {
+        return ctx.dsl().execute(CLAIM_SQL, updateId) > 0;
+    }
+
+    @Override
+    public boolean isProcessed(DbContext ctx, long updateId) {
+        return ctx.dsl().fetchExists(PROCESSED_UPDATES, PROCESSED_UPDATES.UPDATE_ID.eq(updateId));
+    }
+
+    @Override
+    public int deleteProcessedBefore(DbContext ctx, OffsetDateTime before) {
+        return ctx.dsl().deleteFrom(PROCESSED_UPDATES)
+                .where(PROCESSED_UPDATES.PROCESSED_AT.lt(before))
+                .execute();
+    }
+}
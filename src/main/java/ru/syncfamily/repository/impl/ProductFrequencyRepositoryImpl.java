@@ -0,0 +1,51 @@
+package ru.syncfamily.repository.impl;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.ProductFrequencyRepository;
+import ru.syncfamily.service.model.Suggestion;
+
+import java.util.List;
+import java.util.Optional;
+
+import static ru.syncfamily.jooq.Tables.PRODUCT_FREQUENCY;
+
+@ApplicationScoped
+@RequiredArgsConstructor
+public class ProductFrequencyRepositoryImpl implements ProductFrequencyRepository {
+
+    @ConfigProperty(name = "sync-family.suggestions.size", defaultValue = "12")
+    int size;
+
+    private final SuggestionCache suggestions;
+
+    /**
+     * Промах кэша читает ровно top-K строк по индексу (family_id, purchases desc, last_bought_at desc).
+     */
+    @Override
+    public List<Suggestion> findTop(DbContext ctx, long familyId) {
+        var cached = suggestions.get(familyId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        var top = ctx.dsl().select(PRODUCT_FREQUENCY.ID, PRODUCT_FREQUENCY.PRODUCT_NAME)
+                .from(PRODUCT_FREQUENCY)
+                .where(PRODUCT_FREQUENCY.FAMILY_ID.eq(familyId))
+                .orderBy(PRODUCT_FREQUENCY.PURCHASES.desc(), PRODUCT_FREQUENCY.LAST_BOUGHT_AT.desc())
+                .limit(size)
+                .fetch(record -> new Suggestion(record.value1(), record.value2()));
+        suggestions.put(familyId, top, ctx.cacheEpoch());
+        return top;
+    }
+
+    @Override
+    public Optional<Suggestion> findById(DbContext ctx, long familyId, long id) {
+        return ctx.dsl().select(PRODUCT_FREQUENCY.ID, PRODUCT_FREQUENCY.PRODUCT_NAME)
+                .from(PRODUCT_FREQUENCY)
+                .where(PRODUCT_FREQUENCY.FAMILY_ID.eq(familyId))
+                .and(PRODUCT_FREQUENCY.ID.eq(id))
+                .fetchOptional(record -> new Suggestion(record.value1(), record.value2()));
+    }
+}
@@ -1,95 +1,184 @@
 package ru.syncfamily.repository.impl;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.jooq.Condition;
+import org.jooq.SortField;
+import org.jooq.impl.DSL;
 import ru.syncfamily.repository.DbContext;
 import ru.syncfamily.repository.ProductRepository;
+import ru.syncfamily.repository.PurchaseHistoryRepository;
 import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.ProductKey;
+import ru.syncfamily.service.model.ProductPage;
 
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
-import static org.jooq.impl.DSL.condition;
-import static org.jooq.impl.DSL.field;
+import static ru.syncfamily.jooq.Tables.FAMILIES;
 import static ru.syncfamily.jooq.Tables.SHOPPING_LIST;
 
 @ApplicationScoped
+@RequiredArgsConstructor
 public class ProductRepositoryImpl implements ProductRepository {
 
+    private static final List<SortField<?>> LIST_ORDER = List.of(
+            SHOPPING_LIST.IS_BOUGHT.asc(),
+            SHOPPING_LIST.CREATED_AT.desc(),
+            SHOPPING_LIST.ID.desc());
 
-    @Override
-    public void addProducts(DbContext ctx, long familyId, List<String> products) {
-
-        var query = ctx.dsl()
-                .insertInto(SHOPPING_LIST)
-                .columns(
-                        SHOPPING_LIST.FAMILY_ID,
-                        SHOPPING_LIST.PRODUCT_NAME
-                )
-                .values((Long) null, null)
-                .onConflictDoNothing();
+    private static final List<SortField<?>> REVERSED_LIST_ORDER = List.of(
+            SHOPPING_LIST.IS_BOUGHT.desc(),
+            SHOPPING_LIST.CREATED_AT.asc(),
+            SHOPPING_LIST.ID.asc());
 
-        var batchInsert = ctx.dsl().batch(query);
+    private final UserCache userCache;
+    private final FamilySnapshotCache snapshots;
+    private final ClusterSync clusterSync;
+    private final PurchaseHistoryRepository purchaseHistoryRepository;
 
-        products.forEach(name -> batchInsert.bind(
-                familyId,
-                name
-        ));
+    @Override
+    public List<Product> getAllProductsOrdered(DbContext ctx, long familyId) {
 
-        batchInsert.execute();
+        var cached = snapshots.products(ctx, familyId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
 
+        long version = familyVersion(ctx, familyId);
+        var products = ctx.dsl().selectFrom(SHOPPING_LIST)
+                .where(SHOPPING_LIST.FAMILY_ID.eq(familyId))
+                .orderBy(LIST_ORDER)
+                .fetchInto(Product.class);
+        snapshots.loadedProducts(ctx, familyId, version, products);
+        return products;
     }
 
+    /**
+     * Из снимка страница режется в памяти. Без снимка читается только страница — по индексу
+     * в порядке списка, от курсора, — и снимок при этом не заполняется: строк для него не хватает.
+     */
     @Override
-    public void inverseBought(DbContext ctx, long familyId, long productId) {
+    public ProductPage getProductPage(DbContext ctx, long familyId, ProductKey after, int size) {
 
-        ctx.dsl().update(SHOPPING_LIST)
-                .set(SHOPPING_LIST.IS_BOUGHT, field(condition(SHOPPING_LIST.IS_BOUGHT).not()))
+        var cached = snapshots.versionedProducts(ctx, familyId);
+        if (cached.isPresent()) {
+            return ProductPage.of(cached.get().products(), after, size, cached.get().version());
+        }
+
+        long version = familyVersion(ctx, familyId);
+        // Лишняя строка показывает, есть ли следующая страница
+        var products = ctx.dsl().selectFrom(SHOPPING_LIST)
                 .where(SHOPPING_LIST.FAMILY_ID.eq(familyId))
-                .and(SHOPPING_LIST.ID.eq(productId))
-                .execute();
+                .and(after == null ? DSL.noCondition() : isAfter(after))
+                .orderBy(LIST_ORDER)
+                .limit(size + 1)
+                .fetchInto(Product.class);
+
+        if (products.isEmpty() && after != null) {
+            // После курсора ничего не осталось (продукты удалены или куплены) — показываем последнюю страницу
+            var tail = new ArrayList<>(ctx.dsl().selectFrom(SHOPPING_LIST)
+                    .where(SHOPPING_LIST.FAMILY_ID.eq(familyId))
+                    .orderBy(REVERSED_LIST_ORDER)
+                    .limit(size + 1)
+                    .fetchInto(Product.class));
+            Collections.reverse(tail);
+            if (tail.size() <= size) {
+                return new ProductPage(List.copyOf(tail), null, false, version);
+            }
+            return new ProductPage(List.copyOf(tail.subList(1, tail.size())), ProductKey.of(tail.get(0)), false, version);
+        }
+
+        boolean hasNext = products.size() > size;
+        return new ProductPage(List.copyOf(hasNext ? products.subList(0, size) : products), after, hasNext, version);
     }
 
     @Override
-    public List<Product> getAllProductsOrdered(DbContext ctx, long familyId) {
-
-        return ctx.dsl().selectFrom(SHOPPING_LIST)
+    public Optional<ProductKey> findPreviousPageAfter(DbContext ctx, long familyId, ProductKey after, int size) {
+        if (after == null) {
+            return Optional.empty();
+        }
+
+        var cached = snapshots.products(ctx, familyId);
+        if (cached.isPresent()) {
+            return ProductPage.previousAfter(cached.get(), after, size);
+        }
+
+        // Предыдущая страница — size продуктов до курсора включительно, её курсор — продукт перед ними
+        var before = ctx.dsl().selectFrom(SHOPPING_LIST)
                 .where(SHOPPING_LIST.FAMILY_ID.eq(familyId))
-                .orderBy(
-                        SHOPPING_LIST.IS_BOUGHT.asc(),
-                        SHOPPING_LIST.CREATED_AT.desc()
-                )
+                .and(isAfter(after).not())
+                .orderBy(REVERSED_LIST_ORDER)
+                .limit(size + 1)
                 .fetchInto(Product.class);
+        return before.size() <= size ? Optional.empty() : Optional.of(ProductKey.of(before.get(size)));
     }
 
     @Override
-    public void deleteAllByFamilyId(DbContext ctx, long familyId) {
-        ctx.dsl().deleteFrom(SHOPPING_LIST)
-                .where(SHOPPING_LIST.FAMILY_ID.eq(familyId))
-                .execute();
+    public long deleteAllByFamilyId(DbContext ctx, long familyId) {
+        clusterSync.lockFamily(ctx, familyId);
+        purchaseHistoryRepository.archiveFamily(ctx, familyId);
+        long version = ctx.dsl().update(FAMILIES)
+                .set(FAMILIES.VERSION, FAMILIES.VERSION.plus(1))
+                .where(FAMILIES.ID.eq(familyId))
+                .returningResult(FAMILIES.VERSION)
+                .fetchOne(FAMILIES.VERSION);
+        snapshots.productsCleared(ctx, familyId, version);
+        clusterSync.publish(ctx, familyId);
+        // users.editing_product_id обнуляется внешним ключом (ON DELETE SET NULL) мимо кэша
+        ctx.afterCommit(() -> userCache.invalidateFamily(familyId));
+        return version;
+    }
+
+    @Override
+    public void requireVersion(long familyId, long version) {
+        snapshots.requireVersion(familyId, version);
+    }
+
+    @Override
+    public Optional<List<Product>> findCachedProducts(long familyId) {
+        return snapshots.products(familyId);
     }
 
     @Override
     public Optional<Product> findProduct(DbContext ctx, long familyId, long productId) {
+        var cached = snapshots.products(ctx, familyId);
+        if (cached.isPresent()) {
+            return cached.get().stream()
+                    .filter(product -> product.getId() == productId)
+                    .findFirst();
+        }
         return ctx.dsl().selectFrom(SHOPPING_LIST)
                 .where(SHOPPING_LIST.FAMILY_ID.eq(familyId))
                 .and(SHOPPING_LIST.ID.eq(productId))
                 .fetchOptionalInto(Product.class);
     }
 
-    @Override
-    public void deleteByProductId(DbContext ctx, long familyId, long productId) {
-        ctx.dsl().deleteFrom(SHOPPING_LIST)
-                .where(SHOPPING_LIST.FAMILY_ID.eq(familyId))
-                .and(SHOPPING_LIST.ID.eq(productId))
-                .execute();
+    /**
+     * Версия читается до строк списка: при параллельном изменении она окажется старше строк, а не новее,
+     * и изменение по такой странице получит конфликт версий вместо молчаливой перезаписи.
+     */
+    private static long familyVersion(DbContext ctx, long familyId) {
+        return ctx.dsl().select(FAMILIES.VERSION)
+                .from(FAMILIES)
+                .where(FAMILIES.ID.eq(familyId))
+                .fetchOptional(FAMILIES.VERSION)
+                .orElse(0L);
     }
 
-    @Override
-    public boolean updateProductName(DbContext ctx, long familyId, long productId, String productName) {
-        return ctx.dsl().update(SHOPPING_LIST)
-                .set(SHOPPING_LIST.PRODUCT_NAME, productName)
-                .where(SHOPPING_LIST.ID.eq(productId))
-                .and(SHOPPING_LIST.FAMILY_ID.eq(familyId))
-                .execute() > 0;
+    /**
+     * Строка стоит в списке строго после ключа. Направления сортировки разные, поэтому сравнение
+     * строк {@code (a, b, c) > (...)} не подходит — условие раскрыто по столбцам.
+     */
+    private static Condition isAfter(ProductKey key) {
+        var createdAt = key.createdAt().atZone(ZoneId.systemDefault()).toOffsetDateTime();
+        return SHOPPING_LIST.IS_BOUGHT.gt(key.bought())
+                .or(SHOPPING_LIST.IS_BOUGHT.eq(key.bought())
+                        .and(SHOPPING_LIST.CREATED_AT.lt(createdAt)
+                                .or(SHOPPING_LIST.CREATED_AT.eq(createdAt)
+                                        .and(SHOPPING_LIST.ID.lt(key.id())))));
     }
 }
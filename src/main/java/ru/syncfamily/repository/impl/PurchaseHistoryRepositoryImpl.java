@@ -0,0 +1,145 @@
+package ru.syncfamily.repository.impl;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.PurchaseHistoryRepository;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Objects;
+
+@ApplicationScoped
+@RequiredArgsConstructor
+public class PurchaseHistoryRepositoryImpl implements PurchaseHistoryRepository {
+
+    private static final String CREATE_PARTITION_SQL = """
+            create table if not exists family_sync.purchase_history_%d_%02d
+                partition of family_sync.purchase_history
+                for values from ('%s') to ('%s')
+            """;
+
+    private static final String ARCHIVE_FAMILY_SQL = QueryMetricsListener.named("archive_family", """
+            with cleared as (
+                delete from family_sync.shopping_list
+                where family_id = ?
+                returning *
+            ),
+            archived as (
+                insert into family_sync.purchase_history (product_id, family_id, product_name, created_at, is_bought, bought_at)
+                select id, family_id, product_name, created_at, is_bought, bought_at
+                from cleared
+            ),
+            """ + counted("cleared") + """
+            select count(*)
+            from cleared
+            """);
+
+    // skip locked: строки, которые сейчас меняет пользователь, уйдут следующей пачкой
+    private static final String ARCHIVE_BOUGHT_SQL = QueryMetricsListener.named("archive_bought", """
+            with batch as (
+                select id
+                from family_sync.shopping_list
+                where is_bought
+                  and bought_at < ?
+                order by bought_at
+                limit ?
+                for update skip locked
+            ),
+            moved as (
+                delete from family_sync.shopping_list s
+                using batch b
+                where s.id = b.id
+                returning s.*
+            ),
+            archived as (
+                insert into family_sync.purchase_history (product_id, family_id, product_name, created_at, is_bought, bought_at)
+                select id, family_id, product_name, created_at, is_bought, bought_at
+                from moved
+            ),
+            bumped as (
+                update family_sync.families f
+                set version = f.version + 1
+                where f.id in (select family_id from moved)
+            ),
+            """ + counted("moved") + """
+            select family_id, count(*) as moved
+            from moved
+            group by family_id
+            """);
+
+    private final FamilySnapshotCache snapshots;
+    private final UserCache userCache;
+    private final SuggestionCache suggestions;
+    private final CacheEpoch cacheEpoch;
+    private final ClusterSync clusterSync;
+
+    /**
+     * Пополняет частоту покупок семей купленными строками изменяющего CTE {@code archived}.
+     */
+    private static String counted(String archived) {
+        return """
+                counted as (
+                    insert into family_sync.product_frequency as pf (family_id, name_key, product_name, purchases, last_bought_at)
+                    select family_id,
+                           lower(btrim(product_name)),
+                           max(product_name),
+                           count(*),
+                           max(coalesce(bought_at, now()))
+                    from %s
+                    where is_bought
+                      and family_id is not null
+                    group by family_id, lower(btrim(product_name))
+                    on conflict (family_id, name_key) do update
+                        set product_name   = excluded.product_name,
+                            purchases      = pf.purchases + excluded.purchases,
+                            last_bought_at = greatest(pf.last_bought_at, excluded.last_bought_at)
+                )
+                """.formatted(archived);
+    }
+
+    @Override
+    public void createPartitions(DbContext ctx, YearMonth from, int months) {
+        for (int i = 0; i < months; i++) {
+            var month = from.plusMonths(i);
+            var start = month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+            ctx.dsl().execute(CREATE_PARTITION_SQL.formatted(
+                    month.getYear(), month.getMonthValue(), start, start.plusMonths(1)));
+        }
+    }
+
+    @Override
+    public int archiveFamily(DbContext ctx, long familyId) {
+        int archived = ctx.dsl().resultQuery(ARCHIVE_FAMILY_SQL, familyId).fetchOne(0, int.class);
+        ctx.afterCommit(() -> suggestions.invalidate(familyId));
+        return archived;
+    }
+
+    /**
+     * Купленные продукты пропадают из списков без участия пользователей, поэтому снимки затронутых семей
+     * сбрасываются после коммита так же, как при изменении с другого узла: сообщения со списком перерисуются
+     * при следующем изменении, а нажатие на пропавший продукт получит конфликт версий.
+     */
+    @Override
+    public int archiveBought(DbContext ctx, OffsetDateTime boughtBefore, int limit) {
+        var moved = ctx.dsl().resultQuery(ARCHIVE_BOUGHT_SQL, boughtBefore, limit).fetch();
+        List<Long> familyIds = moved.getValues("family_id", Long.class).stream()
+                .filter(Objects::nonNull)
+                .toList();
+        familyIds.forEach(familyId -> clusterSync.publish(ctx, familyId));
+        ctx.afterCommit(() -> {
+            cacheEpoch.advance();
+            familyIds.forEach(familyId -> {
+                snapshots.invalidate(familyId);
+                // users.editing_product_id обнуляется внешним ключом мимо кэша
+                userCache.invalidateFamily(familyId);
+                suggestions.invalidate(familyId);
+            });
+        });
+        return moved.stream()
+                .mapToInt(row -> row.get("moved", Integer.class))
+                .sum();
+    }
+}
@@ -0,0 +1,92 @@
+package ru.syncfamily.repository.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Tags;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import ru.syncfamily.config.Metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Время каждого запроса — от отправки оператора до конца чтения результата: запросов jOOQ через этот слушатель,
+ * запросов реактивного клиента через {@link #timed}.
+ * Тег {@code query} — имя запроса из комментария в начале текста, см. {@link #named}.
+ * У запросов без имени (построенных DSL jOOQ) тег — шаблон текста: списки параметров разной длины
+ * ({@code in (?, ?, ?)}, пачки значений) сворачиваются, чтобы число серий не росло с данными.
+ * Шаблон считается один раз на текст запроса.
+ */
+@ApplicationScoped
+@RequiredArgsConstructor
+public class QueryMetricsListener implements ExecuteListener {
+
+    private static final String STARTED_AT = QueryMetricsListener.class.getName() + ".startedAt";
+    private static final String NAME_START = "/* ";
+    private static final String NAME_END = " */";
+    private static final int MAX_QUERY_LENGTH = 160;
+    private static final int MAX_TEMPLATES = 1_000;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final Pattern ROW_LIST = Pattern.compile("\\(\\?\\)(\\s*,\\s*\\(\\?\\))+");
+
+    private final Metrics metrics;
+
+    private final Cache<String, String> templates = Caffeine.newBuilder()
+            .maximumSize(MAX_TEMPLATES)
+            .build();
+
+    /**
+     * Текст запроса с именем для тега {@code query}.
+     */
+    static String named(String name, String sql) {
+        return NAME_START + name + NAME_END + "\n" + sql;
+    }
+
+    @Override
+    public void executeStart(ExecuteContext ctx) {
+        ctx.data(STARTED_AT, System.nanoTime());
+    }
+
+    @Override
+    public void end(ExecuteContext ctx) {
+        if (!(ctx.data(STARTED_AT) instanceof Long startedAt) || ctx.sql() == null) {
+            return;
+        }
+        var tags = Tags.of(
+                "query", query(ctx.sql()),
+                "type", ctx.type().name().toLowerCase(),
+                "outcome", ctx.exception() == null ? "success" : "error");
+        metrics.timer(Metrics.QUERY, tags).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Замер запроса реактивного клиента под тем же именем метрики и с теми же тегами.
+     * {@code type} — как у jOOQ: read, write, ddl...
+     */
+    <T> Uni<T> timed(String sql, String type, Uni<T> query) {
+        return metrics.timed(Metrics.QUERY, Tags.of("query", query(sql), "type", type), query);
+    }
+
+    private String query(String sql) {
+        if (sql.startsWith(NAME_START)) {
+            int end = sql.indexOf(NAME_END, NAME_START.length());
+            if (end > 0) {
+                return sql.substring(NAME_START.length(), end);
+            }
+        }
+        return templates.get(sql, QueryMetricsListener::template);
+    }
+
+    static String template(String sql) {
+        var template = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        template = PARAMETER_LIST.matcher(template).replaceAll("?");
+        template = ROW_LIST.matcher(template).replaceAll("(?)");
+        return template.length() <= MAX_QUERY_LENGTH ? template : template.substring(0, MAX_QUERY_LENGTH);
+    }
+}
@@ -0,0 +1,211 @@
+package ru.syncfamily.repository.impl;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import lombok.RequiredArgsConstructor;
+import ru.syncfamily.repository.DuplicateUpdateException;
+import ru.syncfamily.repository.FamilyListStore;
+import ru.syncfamily.service.model.FamilyList;
+import ru.syncfamily.service.model.ListBroadcast;
+import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.User;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static ru.syncfamily.repository.impl.FamilyListSql.ADD_PRODUCTS;
+import static ru.syncfamily.repository.impl.FamilyListSql.CONFLICT;
+import static ru.syncfamily.repository.impl.FamilyListSql.DELETE_PRODUCT;
+import static ru.syncfamily.repository.impl.FamilyListSql.FAMILY_VERSION;
+import static ru.syncfamily.repository.impl.FamilyListSql.KIND;
+import static ru.syncfamily.repository.impl.FamilyListSql.MAX_UNVERSIONED_ATTEMPTS;
+import static ru.syncfamily.repository.impl.FamilyListSql.PRODUCT;
+import static ru.syncfamily.repository.impl.FamilyListSql.RENAME_EDITING_PRODUCT;
+import static ru.syncfamily.repository.impl.FamilyListSql.TOGGLE_BOUGHT;
+import static ru.syncfamily.repository.impl.FamilyListSql.numbered;
+
+/**
+ * {@link FamilyListStore} на неблокирующем клиенте Postgres: запросы не занимают потоки,
+ * результат приходит на event loop. Кэши обновляются после коммита — до него результат никто не читает.
+ * Запросы замеряются в ту же метрику, что и запросы jOOQ, см. {@link QueryMetricsListener}.
+ */
+@ApplicationScoped
+@Typed(ReactiveFamilyListStore.class)
+@RequiredArgsConstructor
+public class ReactiveFamilyListStore implements FamilyListStore {
+
+    private static final String TOGGLE_BOUGHT_SQL = numbered(TOGGLE_BOUGHT);
+    private static final String DELETE_PRODUCT_SQL = numbered(DELETE_PRODUCT);
+    private static final String ADD_PRODUCTS_SQL = numbered(ADD_PRODUCTS);
+    private static final String RENAME_EDITING_PRODUCT_SQL = numbered(RENAME_EDITING_PRODUCT);
+
+    private static final String LOCK_FAMILY_OF_CHAT_SQL = numbered(ClusterSync.LOCK_FAMILY_OF_CHAT_SQL);
+    private static final String NOTIFY_SQL = numbered(ClusterSync.NOTIFY_SQL);
+
+    private static final String OUTBOX_SQL = numbered(OutboxRepositoryImpl.ADD_SQL);
+    private static final String CLAIM_UPDATE_SQL = numbered(ProcessedUpdateRepositoryImpl.CLAIM_SQL);
+
+    private final PgPool pool;
+    private final UserCache userCache;
+    private final FamilySnapshotCache snapshots;
+    private final CacheEpoch cacheEpoch;
+    private final ClusterSync clusterSync;
+    private final QueryMetricsListener queryMetrics;
+
+    @Override
+    public Uni<Optional<FamilyList>> toggleBought(long updateId, long chatId, long productId, Long expectedVersion,
+                                                  Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return change(updateId, chatId, TOGGLE_BOUGHT_SQL, Tuple.of(expectedVersion, chatId, productId), broadcast);
+    }
+
+    @Override
+    public Uni<Optional<FamilyList>> deleteProduct(long updateId, long chatId, long productId, Long expectedVersion,
+                                                   Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return change(updateId, chatId, DELETE_PRODUCT_SQL, Tuple.of(expectedVersion, chatId, productId), broadcast);
+    }
+
+    @Override
+    public Uni<Optional<FamilyList>> addProducts(long updateId, long chatId, List<String> products,
+                                                 Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return change(updateId, chatId, ADD_PRODUCTS_SQL, Tuple.of(null, chatId, products.toArray(String[]::new)), broadcast);
+    }
+
+    @Override
+    public Uni<Optional<FamilyList>> renameEditingProduct(long updateId, long chatId, String productName,
+                                                          Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return change(updateId, chatId, RENAME_EDITING_PRODUCT_SQL, Tuple.of(null, chatId, productName), broadcast);
+    }
+
+    private Uni<Optional<FamilyList>> change(long updateId, long chatId, String sql, Tuple arguments,
+                                             Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        long epoch = cacheEpoch.current();
+        // Изменение без ожидаемой версии (первый параметр) при проигранной гонке повторяется, см. ShoppingListRepositoryImpl
+        boolean unversioned = arguments.getValue(0) == null;
+        return pool.withTransaction(connection -> lockFamilyOf(connection, chatId)
+                        .chain(() -> execute(connection, chatId, sql, arguments, unversioned ? MAX_UNVERSIONED_ATTEMPTS : 1))
+                        .call(list -> list
+                                .filter(changed -> !changed.conflict())
+                                .map(changed -> claim(connection, updateId)
+                                        .chain(() -> publish(connection, List.of(changed.familyId())))
+                                        .chain(() -> enqueue(connection, changed, broadcast)))
+                                .orElseGet(() -> Uni.createFrom().voidItem())))
+                .invoke(list -> list.ifPresent(changed -> {
+                    if (changed.conflict()) {
+                        // Список конфликта снят до чужого изменения — в снимок его не кладём
+                        snapshots.invalidate(changed.familyId());
+                        return;
+                    }
+                    snapshots.replaced(changed.familyId(), changed.version(), changed.products(), changed.members(), epoch);
+                    changed.members().forEach(member -> userCache.put(member, epoch));
+                }));
+    }
+
+    private Uni<Optional<FamilyList>> execute(SqlConnection connection, long chatId, String sql, Tuple arguments,
+                                              int attempts) {
+        return queryMetrics.timed(sql, "write", connection.preparedQuery(sql).execute(arguments))
+                .map(rows -> toFamilyList(chatId, rows))
+                .chain(list -> attempts > 1 && list.map(FamilyList::conflict).orElse(false)
+                        ? execute(connection, chatId, sql, arguments, attempts - 1)
+                        : Uni.createFrom().item(list));
+    }
+
+    /**
+     * Отметка об обработке обновления в транзакции изменения, см. {@link FamilyListStore}.
+     */
+    private Uni<Void> claim(SqlConnection connection, long updateId) {
+        return queryMetrics.timed(CLAIM_UPDATE_SQL, "write", connection.preparedQuery(CLAIM_UPDATE_SQL)
+                        .execute(Tuple.of(updateId)))
+                .chain(rows -> rows.rowCount() > 0
+                        ? Uni.createFrom().voidItem()
+                        : Uni.createFrom().failure(new DuplicateUpdateException(updateId)));
+    }
+
+    private Uni<Void> enqueue(SqlConnection connection, FamilyList changed,
+                              Function<FamilyList, Optional<ListBroadcast>> broadcast) {
+        return broadcast.apply(changed)
+                .map(intent -> queryMetrics.timed(OUTBOX_SQL, "write", connection.preparedQuery(OUTBOX_SQL)
+                                .execute(Tuple.of(changed.familyId(),
+                                        changed.familyId(), changed.version(), intent.repost(), intent.markdown(), intent.header())))
+                        .replaceWithVoid())
+                .orElseGet(() -> Uni.createFrom().voidItem());
+    }
+
+    /**
+     * См. {@link ClusterSync#lockFamilyOf}: вне режима кластера ничего не делает.
+     */
+    private Uni<Void> lockFamilyOf(SqlConnection connection, long chatId) {
+        if (!clusterSync.enabled()) {
+            return Uni.createFrom().voidItem();
+        }
+        return queryMetrics.timed(LOCK_FAMILY_OF_CHAT_SQL, "read", connection.preparedQuery(LOCK_FAMILY_OF_CHAT_SQL)
+                        .execute(Tuple.of(chatId)))
+                .replaceWithVoid();
+    }
+
+    private Uni<Void> publish(SqlConnection connection, List<Long> familyIds) {
+        if (!clusterSync.enabled() || familyIds.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        var batch = familyIds.stream()
+                .map(familyId -> Tuple.of(ClusterSync.CHANNEL, clusterSync.payload(familyId)))
+                .toList();
+        return queryMetrics.timed(NOTIFY_SQL, "batch", connection.preparedQuery(NOTIFY_SQL)
+                        .executeBatch(batch))
+                .replaceWithVoid();
+    }
+
+    private static Optional<FamilyList> toFamilyList(long chatId, RowSet<Row> rows) {
+        var products = new ArrayList<Product>();
+        var members = new ArrayList<User>();
+        long version = 0;
+        boolean conflict = false;
+        for (var row : rows) {
+            version = row.getLong(FAMILY_VERSION);
+            conflict = row.getBoolean(CONFLICT);
+            if (PRODUCT.equals(row.getString(KIND))) {
+                products.add(toProduct(row));
+            } else {
+                members.add(toUser(row));
+            }
+        }
+        return FamilyListSql.assemble(chatId, products, members, version, conflict);
+    }
+
+    private static Product toProduct(Row row) {
+        return Product.builder()
+                .id(row.getLong("id"))
+                .productName(row.getString("product_name"))
+                .isBought(row.getBoolean("is_bought"))
+                .createdAt(toLocal(row.getOffsetDateTime("created_at")))
+                .familyId(row.getLong("family_id"))
+                .build();
+    }
+
+    private static User toUser(Row row) {
+        return new User(
+                row.getLong("chat_id"),
+                row.getString("username"),
+                row.getLong("family_id"),
+                row.getInteger("last_message_id"),
+                row.getBoolean("shopping_list_edit_mode"),
+                row.getLong("editing_product_id"),
+                row.getBoolean("page_after_bought"),
+                toLocal(row.getOffsetDateTime("page_after_created_at")),
+                row.getLong("page_after_id"));
+    }
+
+    private static LocalDateTime toLocal(OffsetDateTime value) {
+        return value == null ? null : value.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+}
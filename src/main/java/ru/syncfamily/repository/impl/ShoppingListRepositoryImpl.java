@@ -0,0 +1,111 @@
+package ru.syncfamily.repository.impl;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.ShoppingListRepository;
+import ru.syncfamily.service.model.FamilyList;
+import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static ru.syncfamily.repository.impl.FamilyListSql.ADD_PRODUCTS;
+import static ru.syncfamily.repository.impl.FamilyListSql.CONFLICT;
+import static ru.syncfamily.repository.impl.FamilyListSql.DELETE_PRODUCT;
+import static ru.syncfamily.repository.impl.FamilyListSql.FAMILY_VERSION;
+import static ru.syncfamily.repository.impl.FamilyListSql.KIND;
+import static ru.syncfamily.repository.impl.FamilyListSql.MAX_UNVERSIONED_ATTEMPTS;
+import static ru.syncfamily.repository.impl.FamilyListSql.PRODUCT;
+import static ru.syncfamily.repository.impl.FamilyListSql.RENAME_EDITING_PRODUCT;
+import static ru.syncfamily.repository.impl.FamilyListSql.TOGGLE_BOUGHT;
+
+/**
+ * JDBC-реализация: запросы см. {@link FamilyListSql}.
+ */
+@ApplicationScoped
+@RequiredArgsConstructor
+public class ShoppingListRepositoryImpl implements ShoppingListRepository {
+
+    private final UserCache userCache;
+    private final FamilySnapshotCache snapshots;
+    private final ClusterSync clusterSync;
+
+    @Override
+    public Optional<FamilyList> toggleBought(DbContext ctx, long chatId, long productId, Long expectedVersion) {
+        return fetch(ctx, chatId, expectedVersion, TOGGLE_BOUGHT, productId);
+    }
+
+    @Override
+    public Optional<FamilyList> deleteProduct(DbContext ctx, long chatId, long productId, Long expectedVersion) {
+        return fetch(ctx, chatId, expectedVersion, DELETE_PRODUCT, productId);
+    }
+
+    @Override
+    public Optional<FamilyList> addProducts(DbContext ctx, long chatId, List<String> products) {
+        return fetch(ctx, chatId, null, ADD_PRODUCTS, (Object) products.toArray(String[]::new));
+    }
+
+    @Override
+    public Optional<FamilyList> renameEditingProduct(DbContext ctx, long chatId, String productName) {
+        return fetch(ctx, chatId, null, RENAME_EDITING_PRODUCT, productName);
+    }
+
+    /**
+     * Выполняет оператор, раскладывает строки на продукты и членов семьи и кладёт результат в кэши:
+     * снимок семьи — в изменения транзакции (в общий снимок они попадут после коммита), пользователей — после коммита.
+     * Параметры оператора — ожидаемая версия, chatId и затем {@code arguments}.
+     * Изменение без ожидаемой версии проиграло гонку параллельному изменению семьи — повторяем его
+     * следующим оператором, который уже увидит чужое изменение.
+     */
+    private Optional<FamilyList> fetch(DbContext ctx, long chatId, Long expectedVersion, String sql, Object... arguments) {
+
+        clusterSync.lockFamilyOf(ctx, chatId);
+        var list = execute(ctx, chatId, expectedVersion, sql, arguments);
+        for (int attempt = 1; attempt < MAX_UNVERSIONED_ATTEMPTS && expectedVersion == null
+                && list.map(FamilyList::conflict).orElse(false); attempt++) {
+            list = execute(ctx, chatId, null, sql, arguments);
+        }
+
+        list.ifPresent(changed -> {
+            long familyId = changed.familyId();
+            if (changed.conflict()) {
+                // Список конфликта снят до чужого изменения — в снимок его не кладём
+                snapshots.invalidate(familyId);
+                return;
+            }
+            clusterSync.publish(ctx, familyId);
+            snapshots.replaced(ctx, familyId, changed.version(), changed.products(), changed.members());
+            ctx.afterCommit(() -> changed.members().forEach(member -> userCache.put(member, ctx.cacheEpoch())));
+        });
+        return list;
+    }
+
+    private static Optional<FamilyList> execute(DbContext ctx, long chatId, Long expectedVersion, String sql,
+                                                Object... arguments) {
+        var bindings = new ArrayList<>();
+        // Типизированный null: иначе драйвер не выведет тип параметра
+        bindings.add(DSL.val(expectedVersion, SQLDataType.BIGINT));
+        bindings.add(chatId);
+        bindings.addAll(List.of(arguments));
+
+        var products = new ArrayList<Product>();
+        var members = new ArrayList<User>();
+        long version = 0;
+        boolean conflict = false;
+        for (var row : ctx.dsl().resultQuery(sql, bindings.toArray()).fetch()) {
+            version = row.get(FAMILY_VERSION, Long.class);
+            conflict = row.get(CONFLICT, Boolean.class);
+            if (PRODUCT.equals(row.get(KIND, String.class))) {
+                products.add(row.into(Product.class));
+            } else {
+                members.add(row.into(User.class));
+            }
+        }
+        return FamilyListSql.assemble(chatId, products, members, version, conflict);
+    }
+}
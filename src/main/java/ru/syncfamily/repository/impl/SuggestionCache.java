@@ -0,0 +1,59 @@
+package ru.syncfamily.repository.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.service.model.Suggestion;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Top-K частых покупок по id семьи. Частота меняется только при переносе в историю,
+ * поэтому запись живёт до инвалидации этим переносом (или сообщением другого узла).
+ */
+@ApplicationScoped
+@RequiredArgsConstructor
+public class SuggestionCache {
+
+    @ConfigProperty(name = "sync-family.cache.suggestions.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @ConfigProperty(name = "sync-family.cache.suggestions.expire-after-access", defaultValue = "1h")
+    Duration expireAfterAccess;
+
+    private final CacheEpoch cacheEpoch;
+
+    private Cache<Long, List<Suggestion>> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    public Optional<List<Suggestion>> get(long familyId) {
+        return Optional.ofNullable(cache.getIfPresent(familyId));
+    }
+
+    /**
+     * Кладёт подсказки, прочитанные в эпоху {@code epoch}; устаревшее чтение только вытесняет запись.
+     */
+    public void put(long familyId, List<Suggestion> suggestions, long epoch) {
+        if (cacheEpoch.isCurrent(epoch)) {
+            cache.put(familyId, List.copyOf(suggestions));
+        } else {
+            cache.invalidate(familyId);
+        }
+    }
+
+    public void invalidate(long familyId) {
+        cache.invalidate(familyId);
+    }
+}
@@ -0,0 +1,29 @@
+package ru.syncfamily.repository.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Действия, привязанные к исходу транзакции {@link PostgresDbImpl#async}.
+ */
+class TransactionHooks {
+
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Runnable> afterRollback = new ArrayList<>();
+
+    void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    void afterRollback(Runnable action) {
+        afterRollback.add(action);
+    }
+
+    void committed() {
+        afterCommit.forEach(Runnable::run);
+    }
+
+    void rolledBack() {
+        afterRollback.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.syncfamily.repository.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.service.model.User;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Кэш пользователей по chatId перед {@link FamilyRepositoryImpl#getFamilyMemberByChatId}.
+ * Хранит копии: объекты User изменяются обработчиками и не должны протекать в кэш.
+ */
+@ApplicationScoped
+@RequiredArgsConstructor
+public class UserCache {
+
+    @ConfigProperty(name = "sync-family.cache.users.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @ConfigProperty(name = "sync-family.cache.users.expire-after-write", defaultValue = "10m")
+    Duration expireAfterWrite;
+
+    private final CacheEpoch cacheEpoch;
+
+    private Cache<Long, User> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    public Optional<User> get(long chatId) {
+        return Optional.ofNullable(cache.getIfPresent(chatId)).map(User::copy);
+    }
+
+    /**
+     * Кладёт пользователя, прочитанного в эпоху {@code epoch}; устаревшее чтение только вытесняет запись.
+     */
+    public void put(User user, long epoch) {
+        if (cacheEpoch.isCurrent(epoch)) {
+            cache.put(user.getChatId(), user.copy());
+        } else {
+            cache.invalidate(user.getChatId());
+        }
+    }
+
+    /**
+     * Меняет у закэшированного пользователя только lastMessageId; остальные поля остаются как есть.
+     */
+    public void lastMessageIdChanged(long chatId, Integer lastMessageId) {
+        cache.asMap().computeIfPresent(chatId, (id, user) -> {
+            var copy = user.copy();
+            copy.setLastMessageId(lastMessageId);
+            return copy;
+        });
+    }
+
+    public void invalidate(long chatId) {
+        cache.invalidate(chatId);
+    }
+
+    public void invalidateFamily(long familyId) {
+        cache.asMap().values().removeIf(user -> user.getFamilyId() != null && user.getFamilyId() == familyId);
+    }
+}
@@ -0,0 +1,23 @@
+package ru.syncfamily.service;
+
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.service.model.ListBroadcast;
+
+/**
+ * Перерисовка сообщений со списком у всех членов семьи через outbox: намерение записывается в той же
+ * транзакции, что и изменение списка, а фоновый отправитель выбирает записи пачками и рассылает их.
+ * Перерисовки одной семьи из пачки сводятся в одну по текущему состоянию списка.
+ */
+public interface BroadcastService {
+
+    /**
+     * Записывает перерисовку в outbox в транзакции {@code ctx}; отправитель проснётся после коммита.
+     * {@code familyVersion} — версия списка, которую записало изменение: состояние старше неё не рисуется.
+     */
+    void enqueue(DbContext ctx, long familyId, long familyVersion, ListBroadcast broadcast);
+
+    /**
+     * Будит отправителя после коммита, записавшего перерисовку в outbox в обход {@link #enqueue}.
+     */
+    void wakeUp();
+}
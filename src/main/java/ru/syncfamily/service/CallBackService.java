@@ -2,6 +2,7 @@ package ru.syncfamily.service;
 
 import io.smallrye.mutiny.Uni;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.syncfamily.service.model.CallBackToken;
 
 public interface CallBackService {
     Uni<Void> handleBuy(Update update);
@@ -21,4 +22,26 @@ public interface CallBackService {
     Uni<Void> handleDeleteProduct(Update update);
 
     Uni<Void> handleConfirmLeaveFamily(Update update);
+
+    /**
+     * Переход на предыдущую или следующую страницу списка.
+     */
+    Uni<Void> handlePage(Update update);
+
+    /**
+     * Показывает частые покупки семьи, которых сейчас нет в списке.
+     */
+    Uni<Void> handleSuggestions(Update update);
+
+    /**
+     * Добавляет в список выбранную частую покупку.
+     */
+    Uni<Void> handleAddSuggestion(Update update);
+
+    /**
+     * Нажата кнопка устаревшей версии списка; проверка не обращается к базе.
+     */
+    boolean isStale(long chatId, CallBackToken token);
+
+    Uni<Void> handleStale(Update update);
 }
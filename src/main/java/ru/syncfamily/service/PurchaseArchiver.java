@@ -0,0 +1,12 @@
+package ru.syncfamily.service;
+
+import io.smallrye.mutiny.Uni;
+
+public interface PurchaseArchiver {
+
+    /**
+     * Переносит давно купленные продукты из списков в историю покупок пачками.
+     * Возвращает число перенесённых продуктов.
+     */
+    Uni<Integer> archive();
+}
@@ -1,5 +1,6 @@
 package ru.syncfamily.service;
 
+import io.smallrye.mutiny.Uni;
 import org.telegram.telegrambots.meta.api.methods.botapimethods.BotApiMethod;
 
 import java.io.Serializable;
@@ -7,5 +8,23 @@ import java.io.Serializable;
 public interface SendService {
     <T extends Serializable> T send(BotApiMethod<T> message);
 
+    /**
+     * Неблокирующая отправка через асинхронное выполнение OkHttp.
+     * При ошибке Uni завершается значением null, как и {@link #send(BotApiMethod)}.
+     */
+    <T extends Serializable> Uni<T> sendAsync(BotApiMethod<T> message);
+
+    /**
+     * Как {@link #sendAsync(BotApiMethod)}, но сбой, после которого повтор может помочь (сеть, таймаут,
+     * исчерпанные повторы на 429), возвращается вызывающему. Отказ Telegram по существу запроса
+     * (бот заблокирован, чат не найден) по-прежнему даёт null: повторять его бессмысленно.
+     */
+    <T extends Serializable> Uni<T> deliverAsync(BotApiMethod<T> message);
+
     void answerCallback(String callbackQueryId);
+
+    /**
+     * Ответ на нажатие с коротким уведомлением поверх чата.
+     */
+    void answerCallback(String callbackQueryId, String text);
 }
@@ -1,12 +1,24 @@
 package ru.syncfamily.service;
 
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
-import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.ProductPage;
+import ru.syncfamily.service.model.Suggestion;
 
 import java.util.List;
 
 public interface TelegramUiService {
 
-    InlineKeyboardMarkup createShoppingListKeyboard(List<Product> products, boolean edit);
+    /**
+     * Клавиатура страницы из общего кэша: одинаковые страницы семьи строятся и сериализуются один раз.
+     * Возвращённую клавиатуру не изменять — её получают и другие члены семьи.
+     */
+    InlineKeyboardMarkup shoppingListKeyboard(long familyId, ProductPage page, boolean edit);
+
+    InlineKeyboardMarkup createShoppingListKeyboard(ProductPage page, boolean edit);
+
+    /**
+     * Частые покупки: добавление в список одним нажатием и возврат к списку.
+     */
+    InlineKeyboardMarkup createSuggestionsKeyboard(List<Suggestion> suggestions);
 
 }
@@ -0,0 +1,26 @@
+package ru.syncfamily.service;
+
+import io.smallrye.mutiny.Uni;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.DuplicateUpdateException;
+
+public interface UpdateDeduplicator {
+
+    /**
+     * true — это обновление уже обработано, его нужно пропустить.
+     */
+    Uni<Boolean> isProcessed(long updateId);
+
+    /**
+     * Отмечает update_id обработанным в транзакции, которая применяет обновление: отметка и изменение
+     * фиксируются или откатываются вместе. Если обновление уже отмечено (параллельная доставка),
+     * бросает {@link DuplicateUpdateException} и транзакция откатывается.
+     */
+    void claim(DbContext ctx, long updateId);
+
+    /**
+     * Отдельная отметка после успешной обработки — для обновлений, которые только отвечают пользователю
+     * и ничего не меняют. Если обновление уже отмечено в транзакции изменения, ничего не делает.
+     */
+    Uni<Void> markProcessed(long updateId);
+}
@@ -0,0 +1,32 @@
+package ru.syncfamily.service;
+
+import io.smallrye.mutiny.Uni;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+public interface UpdateDispatcher {
+
+    /**
+     * Ставит задачу в очередь полосы, выбранной по ключу.
+     * Задачи с одинаковым ключом выполняются строго последовательно, с разными — параллельно.
+     */
+    void dispatch(long key, Supplier<Uni<Void>> task);
+
+    /**
+     * Ключ полосы для чата: id семьи, если он известен этому узлу (в том числе по кэшу пользователей),
+     * иначе сам chatId.
+     */
+    long laneKey(long chatId);
+
+    /**
+     * Запоминает семью чата. Вызывается при каждой смене семьи (создание, вступление по ссылке)
+     * и при чтении пользователя в обработчиках.
+     */
+    void bindFamily(long chatId, long familyId);
+
+    /**
+     * Семья чата, если она уже известна этому узлу.
+     */
+    Optional<Long> familyOf(long chatId);
+}
@@ -0,0 +1,287 @@
+package ru.syncfamily.service.impl;
+
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.FamilyRepository;
+import ru.syncfamily.repository.OutboxRepository;
+import ru.syncfamily.repository.PostgresDb;
+import ru.syncfamily.repository.ProductRepository;
+import ru.syncfamily.service.BroadcastService;
+import ru.syncfamily.service.SendService;
+import ru.syncfamily.service.TelegramUiService;
+import ru.syncfamily.service.model.ListBroadcast;
+import ru.syncfamily.service.model.OutboxEntry;
+import ru.syncfamily.service.model.ProductKey;
+import ru.syncfamily.service.model.ProductPage;
+import ru.syncfamily.service.model.User;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Отправитель outbox. Будится после коммита, записавшего перерисовку, и раз в {@code poll-interval}
+ * (подбирает записи упавших узлов и пропущенные пробуждения).
+ * <p>
+ * Записи берутся в аренду по семьям. Каждая семья рассылается независимо от остальных: её записи склеиваются,
+ * список рендерится по текущему состоянию из кэша, рассылается с учётом лимитов Telegram, и одной транзакцией
+ * сохраняются новые id сообщений, записи отмечаются обработанными и аренда семьи снимается. Если узел упадёт
+ * посреди рассылки, аренда истечёт и семья перерисуется повторно — перерисовка по текущему состоянию идемпотентна.
+ */
+@Slf4j
+@ApplicationScoped
+@RequiredArgsConstructor
+public class BroadcastServiceImpl implements BroadcastService {
+
+    private static final String MARKDOWN = "Markdown";
+
+    private final PostgresDb db;
+    private final FamilyRepository familyRepository;
+    private final ProductRepository productRepository;
+    private final OutboxRepository outboxRepository;
+
+    private final SendService sendService;
+    private final TelegramUiService uiService;
+
+    private final AtomicBoolean wakeUpScheduled = new AtomicBoolean();
+    private final AtomicBoolean claiming = new AtomicBoolean();
+    private final AtomicBoolean drainAgain = new AtomicBoolean();
+    private final AtomicInteger familiesInFlight = new AtomicInteger();
+
+    @ConfigProperty(name = "sync-family.telegram.fan-out-parallelism", defaultValue = "8")
+    int parallelism;
+
+    @ConfigProperty(name = "sync-family.render.coalesce-window", defaultValue = "300ms")
+    Duration coalesceWindow;
+
+    @ConfigProperty(name = "sync-family.list.page-size", defaultValue = "20")
+    int pageSize;
+
+    @ConfigProperty(name = "sync-family.outbox.families-in-flight", defaultValue = "16")
+    int maxFamiliesInFlight;
+
+    @ConfigProperty(name = "sync-family.outbox.lease", defaultValue = "1m")
+    Duration lease;
+
+    @ConfigProperty(name = "sync-family.outbox.retention", defaultValue = "24h")
+    Duration retention;
+
+    @Override
+    public void enqueue(DbContext ctx, long familyId, long familyVersion, ListBroadcast broadcast) {
+        outboxRepository.add(ctx, familyId, familyVersion, broadcast);
+        ctx.afterCommit(this::wakeUp);
+    }
+
+    /**
+     * Первое пробуждение в окне склейки запускает таймер, остальные попадут в тот же проход.
+     */
+    @Override
+    public void wakeUp() {
+        if (coalesceWindow.isZero()) {
+            drain();
+            return;
+        }
+        if (wakeUpScheduled.compareAndSet(false, true)) {
+            Uni.createFrom().voidItem()
+                    .onItem().delayIt().by(coalesceWindow)
+                    .subscribe().with(ignored -> {
+                        wakeUpScheduled.set(false);
+                        drain();
+                    });
+        }
+    }
+
+    @Scheduled(every = "${sync-family.outbox.poll-interval:5s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void poll() {
+        drain();
+    }
+
+    @Scheduled(every = "${sync-family.outbox.prune-interval:1h}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> prune() {
+        var before = OffsetDateTime.now().minus(retention);
+        return db.async(ctx -> outboxRepository.deleteProcessedBefore(ctx, before))
+                .invoke(deleted -> log.info("Удалено {} обработанных записей outbox", deleted))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Берёт в аренду семьи на свободные слоты и запускает рассылку каждой. Медленная семья (упёршаяся
+     * в лимиты Telegram) занимает только свой слот, остальные семьи рассылаются без неё.
+     * Взятия не пересекаются: пробуждение во время взятия запустит следующее сразу после него,
+     * а завершённая семья освобождает слот и будит отправителя снова.
+     */
+    private void drain() {
+        if (!claiming.compareAndSet(false, true)) {
+            drainAgain.set(true);
+            return;
+        }
+        drainAgain.set(false);
+        int free = maxFamiliesInFlight - familiesInFlight.get();
+        if (free <= 0) {
+            claiming.set(false);
+            return;
+        }
+        db.async(ctx -> outboxRepository.claim(ctx, free, lease)).subscribe().with(
+                entries -> {
+                    entries.stream()
+                            .collect(Collectors.groupingBy(OutboxEntry::familyId, LinkedHashMap::new, Collectors.toList()))
+                            .forEach(this::drainFamily);
+                    claiming.set(false);
+                    if (drainAgain.getAndSet(false)) {
+                        drain();
+                    }
+                },
+                e -> {
+                    claiming.set(false);
+                    log.error("Ошибка при взятии записей outbox", e);
+                });
+    }
+
+    private void drainFamily(long familyId, List<OutboxEntry> entries) {
+        familiesInFlight.incrementAndGet();
+        var family = entries.stream()
+                .reduce((earlier, later) -> new OutboxEntry(
+                        later.id(),
+                        later.familyId(),
+                        Math.max(earlier.familyVersion(), later.familyVersion()),
+                        earlier.broadcast().mergeWith(later.broadcast())))
+                .orElseThrow();
+        var ids = entries.stream().map(OutboxEntry::id).toList();
+
+        render(family)
+                .chain(delivery -> db.async(ctx -> {
+                            // Новые id сообщений сохраняются и при сбое: иначе повтор оставит в чатах лишние копии списка
+                            familyRepository.updateLastMessageId(ctx, delivery.updated());
+                            if (delivery.failure() == null) {
+                                outboxRepository.markProcessed(ctx, ids);
+                                outboxRepository.release(ctx, familyId);
+                            }
+                            return delivery;
+                        })
+                        .chain(saved -> saved.failure() == null
+                                ? Uni.createFrom().voidItem()
+                                : Uni.createFrom().<Void>failure(saved.failure())))
+                .subscribe().with(
+                        sent -> familyDrained(),
+                        e -> {
+                            // Аренда истечёт, и семью возьмут снова
+                            log.error("Ошибка при рассылке семье {} из outbox", familyId, e);
+                            familyDrained();
+                        });
+    }
+
+    private void familyDrained() {
+        familiesInFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Перерисовывает список семьи у всех её членов.
+     * Снимок семьи старше версии из outbox (узел ещё не получил уведомление об изменении с другого узла)
+     * не используется: перерисовка не должна вернуть в чаты список старее уже показанного.
+     * Сбой чтения из базы завершает Uni ошибкой; сбои доставки отдельным членам — в {@link Delivery#failure}.
+     */
+    private Uni<Delivery> render(OutboxEntry family) {
+        long familyId = family.familyId();
+        var broadcast = family.broadcast();
+        return db.async(ctx -> {
+                    productRepository.requireVersion(familyId, family.familyVersion());
+                    var members = familyRepository.getFamilyMembersByFamilyId(ctx, familyId);
+                    // У каждого члена семьи своя страница; одна и та же страница читается один раз
+                    var pages = new HashMap<ProductKey, ProductPage>();
+                    members.forEach(member -> pages.computeIfAbsent(member.pageAfter(),
+                            after -> productRepository.getProductPage(ctx, familyId, after, pageSize)));
+                    return Pair.of(members, pages);
+                })
+                .chain(state -> broadcast.repost()
+                        ? fanOut(state.getLeft(), user -> repost(user, state.getRight().get(user.pageAfter()), broadcast))
+                        : fanOut(state.getLeft(), user -> edit(user, state.getRight().get(user.pageAfter()), broadcast)));
+    }
+
+    private Uni<User> repost(User user, ProductPage page, ListBroadcast broadcast) {
+        return deleteLastMessage(user)
+                .chain(() -> sendService.deliverAsync(SendMessage.builder()
+                        .chatId(user.getChatId())
+                        .text(broadcast.headerFor(user))
+                        .parseMode(broadcast.markdown() ? MARKDOWN : null)
+                        .replyMarkup(uiService.shoppingListKeyboard(user.getFamilyId(), page, user.isShoppingListEditMode()))
+                        .build()))
+                .map(sent -> {
+                    if (sent == null) {
+                        return null;
+                    }
+                    user.setLastMessageId(sent.getMessageId());
+                    return user;
+                });
+    }
+
+    private Uni<User> edit(User user, ProductPage page, ListBroadcast broadcast) {
+        if (!hasLastMessage(user)) {
+            // Если сообщения еще нет (первый раз), отправляем новое
+            return repost(user, page, broadcast);
+        }
+        // РЕДАКТИРУЕМ старое сообщение
+        return sendService.deliverAsync(EditMessageText.builder()
+                        .chatId(user.getChatId())
+                        .messageId(user.getLastMessageId())
+                        .text(broadcast.headerFor(user))
+                        .parseMode(broadcast.markdown() ? MARKDOWN : null)
+                        .replyMarkup(uiService.shoppingListKeyboard(user.getFamilyId(), page, user.isShoppingListEditMode()))
+                        .build())
+                .map(ignored -> (User) null);
+    }
+
+    /**
+     * Выполняет доставку всем членам семьи параллельно (не больше {@code parallelism} запросов сразу).
+     * Доставка, вернувшая null, id сообщения не меняла и в результат не попадает. Сбой доставки одному члену
+     * не прерывает остальных: он запоминается, и вся семья будет перерисована повторно.
+     */
+    private Uni<Delivery> fanOut(List<User> members, Function<User, Uni<User>> delivery) {
+        var failure = new AtomicReference<Throwable>();
+        return Multi.createFrom().iterable(members)
+                .onItem().transformToUni(user -> delivery.apply(user)
+                        .onFailure().recoverWithItem(e -> {
+                            log.warn("Не удалось доставить список в чат {}", user.getChatId(), e);
+                            failure.compareAndSet(null, e);
+                            return null;
+                        }))
+                .merge(parallelism)
+                .collect().asList()
+                .map(updated -> new Delivery(updated, failure.get()));
+    }
+
+    private Uni<Void> deleteLastMessage(User user) {
+        if (!hasLastMessage(user)) {
+            return Uni.createFrom().voidItem();
+        }
+        return sendService.sendAsync(new DeleteMessage(String.valueOf(user.getChatId()), user.getLastMessageId()))
+                .replaceWithVoid();
+    }
+
+    private static boolean hasLastMessage(User user) {
+        return user.getLastMessageId() != null && user.getLastMessageId() != 0;
+    }
+
+    /**
+     * Итог рассылки семье: пользователи, у которых сменился id сообщения, и первый сбой доставки (или null).
+     */
+    private record Delivery(List<User> updated, Throwable failure) {
+    }
+}
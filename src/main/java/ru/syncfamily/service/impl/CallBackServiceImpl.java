@@ -1,36 +1,46 @@
 package ru.syncfamily.service.impl;
 
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardRow;
+import ru.syncfamily.config.BlockingExecutor;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.FamilyListStore;
 import ru.syncfamily.repository.FamilyRepository;
 import ru.syncfamily.repository.PostgresDb;
+import ru.syncfamily.repository.ProductFrequencyRepository;
 import ru.syncfamily.repository.ProductRepository;
+import ru.syncfamily.service.BroadcastService;
 import ru.syncfamily.service.CallBackService;
 import ru.syncfamily.service.SendService;
 import ru.syncfamily.service.TelegramUiService;
-import ru.syncfamily.service.model.CallBack;
-import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.UpdateDeduplicator;
+import ru.syncfamily.service.UpdateDispatcher;
+import ru.syncfamily.service.model.CallBackToken;
+import ru.syncfamily.service.model.FamilyList;
+import ru.syncfamily.service.model.ListBroadcast;
+import ru.syncfamily.service.model.ProductPage;
 import ru.syncfamily.service.model.User;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static ru.syncfamily.service.model.CallBack.CLEAR_ALL;
 import static ru.syncfamily.service.model.CallBack.DELETE_PRODUCT;
 import static ru.syncfamily.service.model.CallBack.EDIT_PRODUCT;
+import static ru.syncfamily.service.model.CallBack.PAGE_NEXT;
 import static ru.syncfamily.service.model.CallBack.REFRESH;
 import static ru.syncfamily.service.model.CallBack.TOGGLE_MODE_EDIT;
 
@@ -42,91 +52,94 @@ public class CallBackServiceImpl implements CallBackService {
     private final PostgresDb db;
     private final FamilyRepository familyRepository;
     private final ProductRepository productRepository;
+    private final ProductFrequencyRepository productFrequencyRepository;
+    private final FamilyListStore familyListStore;
+    private final UpdateDeduplicator deduplicator;
 
     private final SendService sendService;
+    private final BroadcastService broadcastService;
     private final TelegramUiService uiService;
+    private final UpdateDispatcher dispatcher;
+    private final BlockingExecutor blockingExecutor;
 
-    private static int getProductId(String data, CallBack confirmEditProduct) {
-        return Integer.parseInt(data.replace(confirmEditProduct.getAction(), ""));
+    @ConfigProperty(name = "sync-family.list.page-size", defaultValue = "20")
+    int pageSize;
+
+    @ConfigProperty(name = "sync-family.list.max-version-attempts", defaultValue = "3")
+    int maxVersionAttempts;
+
+    private static long getProductId(String data) {
+        return CallBackToken.decode(data).productId();
+    }
+
+    private User getCurrentUser(DbContext ctx, long chatId) {
+        var user = familyRepository.getFamilyMemberByChatId(ctx, chatId)
+                .orElseThrow();
+        // Дальнейшие обновления этого чата пойдут в полосу семьи
+        dispatcher.bindFamily(chatId, user.getFamilyId());
+        return user;
+    }
+
+    private ProductPage currentPage(DbContext ctx, User user) {
+        return productRepository.getProductPage(ctx, user.getFamilyId(), user.pageAfter(), pageSize);
+    }
+
+    private FamilyList bind(FamilyList list) {
+        dispatcher.bindFamily(list.actor().getChatId(), list.familyId());
+        return list;
     }
 
     @Override
     public Uni<Void> handleBuy(Update update) {
 
         var callbackQuery = update.getCallbackQuery();
-        String callbackData = callbackQuery.getData();
         long chatId = callbackQuery.getMessage().getChatId();
         String actor = callbackQuery.getFrom().getFirstName();
 
-        int productId = getProductId(callbackData, CallBack.BUY);
-
-        return db.async(ctx -> {
-                    var user = familyRepository.getFamilyMemberByChatId(ctx, chatId)
-                            .orElseThrow();
-                    var familyId = user.getFamilyId();
-                    productRepository.inverseBought(ctx, familyId, productId);
-                    List<Product> products = productRepository.getAllProductsOrdered(ctx, familyId);
-                    List<User> users = familyRepository.getFamilyMembersByFamilyId(ctx, familyId);
-                    return Pair.of(users, products);
-                })
-                .map(pair -> {
-
-                    var users = pair.getLeft();
-                    var products = pair.getRight();
-
-                    List<User> updatedUsers = new ArrayList<>();
-
-                    var productOpt = products.stream()
-                            .filter(p -> p.getId().equals(productId))
-                            .findFirst();
+        var token = CallBackToken.decode(callbackQuery.getData());
+        long productId = token.productId();
+
+        return changeAtVersion(update, token, token.expectedFamilyVersion(), 1,
+                expectedVersion -> familyListStore.toggleBought(update.getUpdateId(), chatId, productId, expectedVersion,
+                        list -> list.products().stream()
+                                .filter(p -> p.getId() == productId)
+                                .findFirst()
+                                .map(product -> {
+                                    String action = product.isBought() ? "купил(а)" : "отменил(а) покупку";
+                                    return ListBroadcast.edit(String.format(
+                                            "🛒 *Список обновлен* ✅ *%s* %s: *%s*",
+                                            actor, action, product.getProductName()
+                                    ));
+                                })
+                                // Продукта нет: его вернули в список, где он уже был некупленным, и строки слились
+                                .or(() -> Optional.of(ListBroadcast.edit(String.format(
+                                        "🛒 *Список обновлен* ✅ *%s* вернул(а) продукт, который уже есть в списке",
+                                        actor))))));
+    }
 
-                    if (productOpt.isEmpty()) {
-                        return updatedUsers;
+    /**
+     * Изменение по кнопке с ожидаемой версией списка семьи. Если список успел измениться, но страница
+     * пользователя осталась такой, какой он её видел (менялось что-то на других страницах), изменение
+     * повторяется с новой версией; иначе сообщение перерисовывается, как при нажатии на устаревшей кнопке.
+     */
+    private Uni<Void> changeAtVersion(Update update, CallBackToken token, Long expectedVersion, int attempt,
+                                      Function<Long, Uni<Optional<FamilyList>>> change) {
+        return change.apply(expectedVersion)
+                .map(changed -> bind(changed.orElseThrow()))
+                .chain(list -> {
+                    if (!list.conflict()) {
+                        broadcastService.wakeUp();
+                        return Uni.createFrom().voidItem();
                     }
-
-                    var product = productOpt.get();
-
-                    for (var user : users) {
-
-                        String action = product.isBought() ? "купил(а)" : "отменил(а) покупку";
-
-                        String messageText = String.format(
-                                "🛒 *Список обновлен* ✅ *%s* %s: *%s*",
-                                actor, action, product.getProductName()
-                        );
-
-                        if (user.getLastMessageId() != null && user.getLastMessageId() != 0) {
-                            // РЕДАКТИРУЕМ старое сообщение
-                            var edit = EditMessageText.builder()
-                                    .chatId(user.getChatId())
-                                    .messageId(user.getLastMessageId())
-                                    .text(messageText)
-                                    .parseMode("Markdown")
-                                    .replyMarkup(uiService.createShoppingListKeyboard(products, user.isShoppingListEditMode()))
-                                    .build();
-                            sendService.send(edit);
-                        } else {
-                            // Если сообщения еще нет (первый раз), отправляем новое
-                            var send = SendMessage.builder()
-                                    .chatId(user.getChatId())
-                                    .text(messageText)
-                                    .parseMode("Markdown")
-                                    .replyMarkup(uiService.createShoppingListKeyboard(products, user.isShoppingListEditMode()))
-                                    .build();
-                            var m = sendService.send(send);
-                            if (m != null) {
-                                user.setLastMessageId(m.getMessageId());
-                                updatedUsers.add(user);
-                            }
-                        }
+                    var page = ProductPage.of(list.products(), list.actor().pageAfter(), pageSize, list.version());
+                    if (attempt < maxVersionAttempts && CallBackToken.listVersion(page.products()) == token.listVersion()) {
+                        log.debug("Версия списка семьи {} сменилась ({} -> {}), страница прежняя — повторяем",
+                                list.familyId(), expectedVersion, list.version());
+                        return changeAtVersion(update, token, list.version(), attempt + 1, change);
                     }
-                    return updatedUsers;
-
-                }).chain(usersToUpdate -> db.async(ctx -> {
-                    familyRepository.updateLastMessageId(ctx, usersToUpdate);
-                    return null;
-                }))
-                .replaceWithVoid();
+                    log.debug("Список семьи {} изменился под кнопкой, перерисовываем", list.familyId());
+                    return handleStale(update);
+                });
     }
 
     @Override
@@ -137,8 +150,8 @@ public class CallBackServiceImpl implements CallBackService {
                     var messageId = callbackQuery.getMessage().getMessageId();
                     var confirmMarkup = InlineKeyboardMarkup.builder()
                             .keyboardRow(new InlineKeyboardRow(
-                                    InlineKeyboardButton.builder().text("✅ ДА, УДАЛИТЬ").callbackData(CLEAR_ALL.getAction()).build(),
-                                    InlineKeyboardButton.builder().text("❌ ОТМЕНА").callbackData(REFRESH.getAction()).build()
+                                    InlineKeyboardButton.builder().text("✅ ДА, УДАЛИТЬ").callbackData(CLEAR_ALL.callbackData()).build(),
+                                    InlineKeyboardButton.builder().text("❌ ОТМЕНА").callbackData(REFRESH.callbackData()).build()
                             ))
                             .build();
 
@@ -149,7 +162,7 @@ public class CallBackServiceImpl implements CallBackService {
                             .build());
                     return true;
                 })
-                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .runSubscriptionOn(blockingExecutor.executor())
                 .replaceWithVoid();
     }
 
@@ -158,11 +171,10 @@ public class CallBackServiceImpl implements CallBackService {
         var callbackQuery = update.getCallbackQuery();
         long chatId = callbackQuery.getMessage().getChatId();
         var messageId = callbackQuery.getMessage().getMessageId();
-        String data = callbackQuery.getData();
-        int productId = getProductId(data, CallBack.CONFIRM_EDIT_PRODUCT);
+        var token = CallBackToken.decode(callbackQuery.getData());
+        long productId = token.productId();
         return db.async(ctx -> {
-                    User user = familyRepository.getFamilyMemberByChatId(ctx, chatId)
-                            .orElseThrow();
+                    User user = getCurrentUser(ctx, chatId);
                     var familyId = user.getFamilyId();
                     return productRepository.findProduct(ctx, familyId, productId).orElseThrow();
 
@@ -175,11 +187,11 @@ public class CallBackServiceImpl implements CallBackService {
                     var confirmMarkup = InlineKeyboardMarkup.builder()
                             .keyboardRow(new InlineKeyboardRow(
                                     InlineKeyboardButton.builder().text("\uD83D\uDCDD Изменить")
-                                            .callbackData(EDIT_PRODUCT.getAction() + productId).build(),
+                                            .callbackData(CallBackToken.of(EDIT_PRODUCT, productId, token.listVersion(), token.familyVersion()).encode()).build(),
                                     InlineKeyboardButton.builder().text("\uD83D\uDDD1 Удалить")
-                                            .callbackData(DELETE_PRODUCT.getAction() + productId).build(),
+                                            .callbackData(CallBackToken.of(DELETE_PRODUCT, productId, token.listVersion(), token.familyVersion()).encode()).build(),
                                     InlineKeyboardButton.builder().text("❌ ОТМЕНА")
-                                            .callbackData(TOGGLE_MODE_EDIT.getAction()).build()
+                                            .callbackData(TOGGLE_MODE_EDIT.callbackData()).build()
                             ))
                             .build();
 
@@ -195,7 +207,7 @@ public class CallBackServiceImpl implements CallBackService {
 
 
                 })
-                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .runSubscriptionOn(blockingExecutor.executor())
                 .replaceWithVoid();
     }
 
@@ -206,16 +218,16 @@ public class CallBackServiceImpl implements CallBackService {
         long chatId = callbackQuery.getMessage().getChatId();
         var messageId = callbackQuery.getMessage().getMessageId();
         String data = callbackQuery.getData();
-        int productId = getProductId(data, EDIT_PRODUCT);
+        long productId = getProductId(data);
         return db.async(ctx -> {
 
-                    User user = familyRepository.getFamilyMemberByChatId(ctx, chatId)
-                            .orElseThrow();
+                    User user = getCurrentUser(ctx, chatId);
 
                     // Ищем продукт. Если он удален — вернется Optional.empty()
                     return productRepository.findProduct(ctx, user.getFamilyId(), productId)
                             .map(product -> {
                                 // Если продукт найден, проставляем статус редактирования
+                                deduplicator.claim(ctx, update.getUpdateId());
                                 familyRepository.setEditingProductId(ctx, user, productId);
                                 return product;
                             });
@@ -239,7 +251,7 @@ public class CallBackServiceImpl implements CallBackService {
                     return Uni.createFrom().item(() -> sendService.send(edit))
                             .replaceWithVoid();
                 })
-                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+                .runSubscriptionOn(blockingExecutor.executor());
 
     }
 
@@ -248,45 +260,14 @@ public class CallBackServiceImpl implements CallBackService {
         return Uni.createFrom().deferred(() -> {
             var callbackQuery = update.getCallbackQuery();
             long chatId = callbackQuery.getMessage().getChatId();
-            String data = callbackQuery.getData();
-            int productId = getProductId(data, DELETE_PRODUCT);
-
-            return db.async(ctx -> {
-                        var currentUser = familyRepository.getFamilyMemberByChatId(ctx, chatId)
-                                .orElseThrow();
-                        var familyId = currentUser.getFamilyId();
-                        productRepository.deleteByProductId(ctx, familyId, productId);
-                        List<Product> productsOrdered = productRepository.getAllProductsOrdered(ctx, familyId);
-                        List<User> allUsers = familyRepository.getFamilyMembersByFamilyId(ctx, familyId);
-                        return Pair.of(allUsers, productsOrdered);
-                    })
-                    .flatMap(this::refreshMessage)
-                    .replaceWithVoid();
-        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
-    }
-
-    private Uni<Boolean> refreshMessage(Pair<List<User>, List<Product>> tuple) {
-        var allUsers = tuple.getLeft();
-        var productsOrdered = tuple.getRight();
-        for (var user : allUsers) {
-            if (user.getLastMessageId() != null && user.getLastMessageId() != 0) {
-                sendService.send(new DeleteMessage(String.valueOf(user.getChatId()), user.getLastMessageId()));
-            }
-            var message = SendMessage.builder()
-                    .chatId(user.getChatId())
-                    .text("🛒 Список покупок обновлен (" + user.getUsername() + "):")
-                    .replyMarkup(uiService.createShoppingListKeyboard(productsOrdered, user.isShoppingListEditMode()))
-                    .build();
-            var sent = sendService.send(message);
-            if (Objects.nonNull(sent)) {
-                user.setLastMessageId(sent.getMessageId());
-            }
-        }
-
-        return db.async(ctx -> {
-            familyRepository.updateLastMessageId(ctx, allUsers);
-            return true;
-        });
+            var token = CallBackToken.decode(callbackQuery.getData());
+            long productId = token.productId();
+
+            return changeAtVersion(update, token, token.expectedFamilyVersion(), 1,
+                    expectedVersion -> familyListStore.deleteProduct(update.getUpdateId(), chatId, productId, expectedVersion,
+                            list -> Optional.of(ListBroadcast.repost(
+                                    "🛒 Список покупок обновлен (" + ListBroadcast.USERNAME + "):"))));
+        }).runSubscriptionOn(blockingExecutor.executor());
     }
 
     @Override
@@ -295,20 +276,21 @@ public class CallBackServiceImpl implements CallBackService {
         long chatId = callbackQuery.getMessage().getChatId();
 
         return db.async(ctx -> {
-            User user = familyRepository.getFamilyMemberByChatId(ctx, chatId)
-                    .orElseThrow();
+            User user = getCurrentUser(ctx, chatId);
+            // Режим переключается, поэтому повторная доставка не должна переключить его обратно
+            deduplicator.claim(ctx, update.getUpdateId());
             user = familyRepository.setShoppingEditMode(ctx, user);
-            return Pair.of(user, productRepository.getAllProductsOrdered(ctx, user.getFamilyId()));
+            return Pair.of(user, currentPage(ctx, user));
         }).map(pair -> {
 
             var user = pair.getLeft();
-            var products = pair.getRight();
+            var page = pair.getRight();
             var edit = EditMessageText.builder()
                     .chatId(chatId)
                     .messageId(user.getLastMessageId())
                     .text("🛒 *Режим редактирования:*")
                     .parseMode("Markdown")
-                    .replyMarkup(uiService.createShoppingListKeyboard(products, user.isShoppingListEditMode()))
+                    .replyMarkup(uiService.shoppingListKeyboard(user.getFamilyId(), page, user.isShoppingListEditMode()))
                     .build();
 
             return sendService.send(edit);
@@ -322,29 +304,16 @@ public class CallBackServiceImpl implements CallBackService {
         String actor = callbackQuery.getFrom().getFirstName();
         return db.async(ctx -> {
 
-            var user = familyRepository.getFamilyMemberByChatId(ctx, chatId).orElseThrow();
+            var user = getCurrentUser(ctx, chatId);
             Long familyId = user.getFamilyId();
 
-            productRepository.deleteAllByFamilyId(ctx, familyId);
-
-            return familyRepository.getFamilyMembersByFamilyId(ctx, familyId);
-        }).map(users -> {
+            deduplicator.claim(ctx, update.getUpdateId());
+            long version = productRepository.deleteAllByFamilyId(ctx, familyId);
 
             String messageText = String.format("🗑 *%s* очистил(а) список покупок", actor);
+            broadcastService.enqueue(ctx, familyId, version, ListBroadcast.edit(messageText));
 
-            for (var member : users) {
-                if (member.getLastMessageId() != null) {
-                    var edit = EditMessageText.builder()
-                            .chatId(member.getChatId())
-                            .messageId(member.getLastMessageId())
-                            .text(messageText)
-                            .parseMode("Markdown")
-                            .replyMarkup(uiService.createShoppingListKeyboard(List.of(), member.isShoppingListEditMode()))
-                            .build();
-                    sendService.send(edit);
-                }
-            }
-            return users;
+            return familyId;
         }).replaceWithVoid();
     }
 
@@ -355,26 +324,177 @@ public class CallBackServiceImpl implements CallBackService {
         int currentMessageId = callbackQuery.getMessage().getMessageId();
 
         return db.async(ctx -> {
-            User user = familyRepository.getFamilyMemberByChatId(ctx, chatId)
-                    .orElseThrow();
+            User user = getCurrentUser(ctx, chatId);
             user = familyRepository.dropShoppingEditMode(ctx, user);
-            return Pair.of(user, productRepository.getAllProductsOrdered(ctx, user.getFamilyId()));
+            return Pair.of(user, currentPage(ctx, user));
         }).map(pair -> {
 
             var user = pair.getLeft();
-            var products = pair.getRight();
+            var page = pair.getRight();
             var edit = EditMessageText.builder()
                     .chatId(chatId)
                     .messageId(currentMessageId)
                     .text("🛒 *Актуальный список покупок:*")
                     .parseMode("Markdown")
-                    .replyMarkup(uiService.createShoppingListKeyboard(products, user.isShoppingListEditMode()))
+                    .replyMarkup(uiService.shoppingListKeyboard(user.getFamilyId(), page, user.isShoppingListEditMode()))
                     .build();
 
             return sendService.send(edit);
         }).replaceWithVoid();
     }
 
+    /**
+     * Листание: курсор считается от страницы, которую пользователь видит сейчас (она может отличаться
+     * от сохранённого курсора, если хвост списка исчез), новая страница сохраняется за пользователем.
+     */
+    @Override
+    public Uni<Void> handlePage(Update update) {
+        var callbackQuery = update.getCallbackQuery();
+        long chatId = callbackQuery.getMessage().getChatId();
+        int currentMessageId = callbackQuery.getMessage().getMessageId();
+        boolean forward = CallBackToken.decode(callbackQuery.getData()).action() == PAGE_NEXT;
+
+        return db.async(ctx -> {
+            User user = getCurrentUser(ctx, chatId);
+            long familyId = user.getFamilyId();
+            var current = currentPage(ctx, user);
+            var after = forward
+                    ? current.nextAfter().orElse(current.after())
+                    : productRepository.findPreviousPageAfter(ctx, familyId, current.after(), pageSize).orElse(null);
+            // Повторная доставка перелистнула бы ещё на страницу
+            deduplicator.claim(ctx, update.getUpdateId());
+            user = familyRepository.setListPage(ctx, user, after);
+            return Pair.of(user, currentPage(ctx, user));
+        }).chain(pair -> {
+
+            var user = pair.getLeft();
+            var page = pair.getRight();
+            return sendService.sendAsync(EditMessageReplyMarkup.builder()
+                    .chatId(chatId)
+                    .messageId(currentMessageId)
+                    .replyMarkup(uiService.shoppingListKeyboard(user.getFamilyId(), page, user.isShoppingListEditMode()))
+                    .build());
+        }).replaceWithVoid();
+    }
+
+    /**
+     * Подсказки читаются из кэша top-K частоты покупок; из них убираются те, что уже ждут покупки в списке.
+     */
+    @Override
+    public Uni<Void> handleSuggestions(Update update) {
+        var callbackQuery = update.getCallbackQuery();
+        long chatId = callbackQuery.getMessage().getChatId();
+        int currentMessageId = callbackQuery.getMessage().getMessageId();
+
+        return db.async(ctx -> {
+            User user = getCurrentUser(ctx, chatId);
+            long familyId = user.getFamilyId();
+            var top = productFrequencyRepository.findTop(ctx, familyId);
+            var listed = productRepository.getAllProductsOrdered(ctx, familyId).stream()
+                    .filter(product -> !product.isBought())
+                    .map(product -> nameKey(product.getProductName()))
+                    .collect(Collectors.toSet());
+            var suggestions = top.stream()
+                    .filter(suggestion -> !listed.contains(nameKey(suggestion.productName())))
+                    .toList();
+            return Pair.of(top.isEmpty(), suggestions);
+        }).chain(pair -> {
+
+            String text;
+            if (pair.getLeft()) {
+                text = "💡 Частых покупок пока нет: они появятся, когда купленные продукты уйдут в историю";
+            } else if (pair.getRight().isEmpty()) {
+                text = "💡 Всё, что вы часто покупаете, уже в списке";
+            } else {
+                text = "💡 *Частые покупки:*";
+            }
+            return sendService.sendAsync(EditMessageText.builder()
+                    .chatId(chatId)
+                    .messageId(currentMessageId)
+                    .text(text)
+                    .parseMode("Markdown")
+                    .replyMarkup(uiService.createSuggestionsKeyboard(pair.getRight()))
+                    .build());
+        }).replaceWithVoid();
+    }
+
+    @Override
+    public Uni<Void> handleAddSuggestion(Update update) {
+        var callbackQuery = update.getCallbackQuery();
+        long chatId = callbackQuery.getMessage().getChatId();
+        String actor = callbackQuery.getFrom().getFirstName();
+        long suggestionId = CallBackToken.decode(callbackQuery.getData()).productId();
+
+        return db.async(ctx -> {
+            User user = getCurrentUser(ctx, chatId);
+            return productFrequencyRepository.findById(ctx, user.getFamilyId(), suggestionId);
+        }).chain(suggestion -> suggestion
+                .map(found -> familyListStore.addProducts(update.getUpdateId(), chatId, List.of(found.productName()),
+                                list -> Optional.of(ListBroadcast.edit(String.format(
+                                        "🛒 *Список обновлен* ➕ *%s* добавил(а): *%s*",
+                                        actor, found.productName()))))
+                        .map(changed -> bind(changed.orElseThrow()))
+                        .invoke(broadcastService::wakeUp)
+                        .replaceWithVoid())
+                // Подсказка не этой семьи или её уже нет — просто показываем список
+                .orElseGet(() -> handleRefresh(update)));
+    }
+
+    /**
+     * Название без учёта регистра и пробелов по краям, как lower(btrim(...)) в базе.
+     */
+    private static String nameKey(String productName) {
+        return productName.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Кнопка нарисована по другой версии страницы, чем страница пользователя в снимке семьи.
+     * Решение принимается только по памяти: без снимка, без пользователя в кэше или без версии в кнопке
+     * нажатие считается актуальным.
+     */
+    @Override
+    public boolean isStale(long chatId, CallBackToken token) {
+        if (!token.isVersioned()) {
+            return false;
+        }
+        var user = familyRepository.findCachedMember(chatId);
+        if (user.isEmpty()) {
+            return false;
+        }
+        return dispatcher.familyOf(chatId)
+                .flatMap(productRepository::findCachedProducts)
+                .map(products -> ProductPage.of(products, user.get().pageAfter(), pageSize, 0))
+                .map(page -> CallBackToken.listVersion(page.products()) != token.listVersion())
+                .orElse(false);
+    }
+
+    /**
+     * Нажатие на устаревшем списке не выполняется: сообщение перерисовывается по актуальному списку
+     * в текущем режиме пользователя, и он повторяет нажатие уже на нужной кнопке.
+     */
+    @Override
+    public Uni<Void> handleStale(Update update) {
+        var callbackQuery = update.getCallbackQuery();
+        long chatId = callbackQuery.getMessage().getChatId();
+        int currentMessageId = callbackQuery.getMessage().getMessageId();
+
+        return db.async(ctx -> {
+            User user = getCurrentUser(ctx, chatId);
+            return Pair.of(user, currentPage(ctx, user));
+        }).chain(pair -> {
+
+            var user = pair.getLeft();
+            var page = pair.getRight();
+            return sendService.sendAsync(EditMessageText.builder()
+                    .chatId(chatId)
+                    .messageId(currentMessageId)
+                    .text("🔄 *Список уже изменился, вот актуальный:*")
+                    .parseMode("Markdown")
+                    .replyMarkup(uiService.shoppingListKeyboard(user.getFamilyId(), page, user.isShoppingListEditMode()))
+                    .build());
+        }).replaceWithVoid();
+    }
+
     @Override
     public Uni<Void> handleConfirmLeaveFamily(Update update) {
         return null;
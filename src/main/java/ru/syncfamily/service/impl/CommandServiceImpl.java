@@ -9,10 +9,12 @@ import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardRow;
+import ru.syncfamily.repository.DbContext;
 import ru.syncfamily.repository.FamilyRepository;
 import ru.syncfamily.repository.PostgresDb;
 import ru.syncfamily.service.CommandService;
 import ru.syncfamily.service.SendService;
+import ru.syncfamily.service.UpdateDispatcher;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
@@ -30,6 +32,7 @@ public class CommandServiceImpl implements CommandService {
     private final FamilyRepository familyRepository;
 
     private final SendService sendService;
+    private final UpdateDispatcher dispatcher;
 
     @Override
     public Uni<Void> start(Update update) {
@@ -45,13 +48,13 @@ public class CommandServiceImpl implements CommandService {
                                 .keyboardRow(new InlineKeyboardRow(
                                         InlineKeyboardButton.builder()
                                                 .text("🛒 Перейти к покупкам")
-                                                .callbackData(REFRESH.getAction())
+                                                .callbackData(REFRESH.callbackData())
                                                 .build()
                                 ))
                                 .keyboardRow(new InlineKeyboardRow(
                                         InlineKeyboardButton.builder()
                                                 .text("🚪 Выйти из группы")
-                                                .callbackData(CONFIRM_LEAVE_FAMILY.getAction())
+                                                .callbackData(CONFIRM_LEAVE_FAMILY.callbackData())
                                                 .build()
                                 ))
                                 .build();
@@ -87,7 +90,13 @@ public class CommandServiceImpl implements CommandService {
         String userName = update.getMessage().getFrom().getFirstName();
 
         String inviteCode = text.replace("/start ", "").trim();
-        return db.async(ctx -> familyRepository.joinFamily(ctx, chatId, inviteCode, userName))
+        return db.async(ctx -> {
+                    boolean joined = familyRepository.joinFamily(ctx, chatId, inviteCode, userName);
+                    if (joined) {
+                        bindFamily(ctx, chatId);
+                    }
+                    return joined;
+                })
                 .invoke(success -> {
                     if (Boolean.TRUE.equals(success)) {
                         sendService.send(new SendMessage(String.valueOf(chatId), "🤝 Вы успешно вступили в семью по ссылке!"));
@@ -104,7 +113,11 @@ public class CommandServiceImpl implements CommandService {
 
         return db.async(ctx -> familyRepository.getFamilyMemberByChatId(ctx, chatId)
                         .map(user -> familyRepository.getFamilyCode(ctx, user))
-                        .orElseGet(() -> familyRepository.createFamilyAndGetCode(ctx, chatId, userName)))
+                        .orElseGet(() -> {
+                            var code = familyRepository.createFamilyAndGetCode(ctx, chatId, userName);
+                            bindFamily(ctx, chatId);
+                            return code;
+                        }))
                 .map(code -> {
 
                     String inviteLink = "https://t.me/" + BOT_NAME + "?start=" + code;
@@ -129,4 +142,12 @@ public class CommandServiceImpl implements CommandService {
 
                 }).replaceWithVoid();
     }
+
+    /**
+     * Чат сменил семью: дальнейшие его обновления пойдут в полосу новой семьи.
+     */
+    private void bindFamily(DbContext ctx, long chatId) {
+        familyRepository.getFamilyMemberByChatId(ctx, chatId)
+                .ifPresent(user -> dispatcher.bindFamily(chatId, user.getFamilyId()));
+    }
 }
@@ -1,29 +1,27 @@
 package ru.syncfamily.service.impl;
 
+import io.micrometer.core.instrument.Tags;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.syncfamily.config.BlockingExecutor;
+import ru.syncfamily.config.Metrics;
+import ru.syncfamily.repository.FamilyListStore;
 import ru.syncfamily.repository.FamilyRepository;
 import ru.syncfamily.repository.PostgresDb;
-import ru.syncfamily.repository.ProductRepository;
+import ru.syncfamily.service.BroadcastService;
 import ru.syncfamily.service.CallBackService;
 import ru.syncfamily.service.CommandService;
 import ru.syncfamily.service.HandleService;
 import ru.syncfamily.service.SendService;
-import ru.syncfamily.service.TelegramUiService;
-import ru.syncfamily.service.model.CallBack;
+import ru.syncfamily.service.UpdateDispatcher;
+import ru.syncfamily.service.model.CallBackToken;
 import ru.syncfamily.service.model.Command;
-import ru.syncfamily.service.model.Product;
-import ru.syncfamily.service.model.User;
+import ru.syncfamily.service.model.ListBroadcast;
 
-import java.util.List;
-import java.util.Objects;
+import java.util.Optional;
 
 @Slf4j
 @ApplicationScoped
@@ -33,12 +31,15 @@ public class HandleServiceImpl implements HandleService {
 
     private final PostgresDb db;
     private final ListParser listParser;
-    private final TelegramUiService uiService;
     private final CommandService commandService;
     private final SendService sendService;
+    private final BroadcastService broadcastService;
     private final CallBackService callBackService;
     private final FamilyRepository familyRepository;
-    private final ProductRepository productRepository;
+    private final FamilyListStore familyListStore;
+    private final UpdateDispatcher dispatcher;
+    private final BlockingExecutor blockingExecutor;
+    private final Metrics metrics;
 
     @Override
     public Uni<Void> handleTextMessage(Update update) {
@@ -51,48 +52,22 @@ public class HandleServiceImpl implements HandleService {
                 var currentUser = familyRepository.getFamilyMemberByChatId(ctx, senderChatId)
                         .orElseGet(() -> familyRepository.createFamily(ctx, senderChatId,
                                 update.getMessage().getFrom().getFirstName()));
-                var familyId = currentUser.getFamilyId();
-
-                // 1. Проверяем, находится ли пользователь в режиме редактирования конкретного продукта
+                dispatcher.bindFamily(senderChatId, currentUser.getFamilyId());
+                return currentUser;
+            }).chain(currentUser -> {
+                var broadcast = Optional.of(ListBroadcast.repost(
+                        "🛒 Список покупок обновлен (" + update.getMessage().getFrom().getFirstName() + "):"));
+                // 1. Проверяем, находится ли пользователь в режиме редактирования конкретного продукта.
+                // Если продукт уже удален, переименование просто ничего не изменит
                 if (currentUser.getEditingProductId() != null) {
-                    // Пытаемся обновить продукт. Если он удален (вернул false), просто игнорируем
-                    boolean updated = productRepository.updateProductName(ctx, familyId, currentUser.getEditingProductId(), text);
-                    if (updated) {
-                        // Сбрасываем ID редактирования после успешного обновления
-                        familyRepository.dropEditingProductId(ctx, currentUser);
-                    }
-                } else {
-                    // 2. Если не редактируем — парсим текст как новые продукты
-                    List<String> productsFromChat = listParser.parse(text);
-                    productRepository.addProducts(ctx, familyId, productsFromChat);
-                }
-                List<Product> productsOrdered = productRepository.getAllProductsOrdered(ctx, familyId);
-                List<User> allUsers = familyRepository.getFamilyMembersByFamilyId(ctx, familyId);
-                return Pair.of(allUsers, productsOrdered);
-            }).flatMap(tuple -> {
-                var allUsers = tuple.getLeft();
-                var productsOrdered = tuple.getRight();
-                for (var user : allUsers) {
-                    if (user.getLastMessageId() != null && user.getLastMessageId() != 0) {
-                        sendService.send(new DeleteMessage(String.valueOf(user.getChatId()), user.getLastMessageId()));
-                    }
-                    var message = SendMessage.builder()
-                            .chatId(user.getChatId())
-                            .text("🛒 Список покупок обновлен (" + update.getMessage().getFrom().getFirstName() + "):")
-                            .replyMarkup(uiService.createShoppingListKeyboard(productsOrdered, user.isShoppingListEditMode()))
-                            .build();
-                    var sent = sendService.send(message);
-                    if (Objects.nonNull(sent)) {
-                        user.setLastMessageId(sent.getMessageId());
-                    }
+                    return familyListStore.renameEditingProduct(update.getUpdateId(), senderChatId, text, list -> broadcast);
                 }
-
-                return db.async(ctx -> {
-                    familyRepository.updateLastMessageId(ctx, allUsers);
-                    return true;
-                });
-            }).replaceWithVoid();
-        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+                // 2. Если не редактируем — парсим текст как новые продукты
+                return familyListStore.addProducts(update.getUpdateId(), senderChatId, listParser.parse(text), list -> broadcast);
+            }).map(Optional::orElseThrow)
+              .invoke(broadcastService::wakeUp)
+              .replaceWithVoid();
+        }).runSubscriptionOn(blockingExecutor.executor());
     }
 
     @Override
@@ -100,12 +75,13 @@ public class HandleServiceImpl implements HandleService {
 
         var command = Command.getCommand(update.getMessage().getText());
 
-        return switch (command) {
+        Uni<Void> handling = switch (command) {
             case START -> commandService.start(update);
             case START_WITH_INVITE -> commandService.startWithInvite(update);
             case CREATE_FAMILY -> commandService.createFamily(update);
             case UNKNOWN -> Uni.createFrom().voidItem();
         };
+        return metrics.timed(Metrics.HANDLER, Tags.of("type", "command", "action", command.name()), handling);
     }
 
     @Override
@@ -114,11 +90,18 @@ public class HandleServiceImpl implements HandleService {
         var callbackQuery = update.getCallbackQuery();
         String callbackData = callbackQuery.getData();
         String callbackQueryId = callbackQuery.getId();
-        var action = CallBack.getAction(callbackData);
+        var token = CallBackToken.decode(callbackData);
+        var action = token.action();
+
+        if (callBackService.isStale(callbackQuery.getMessage().getChatId(), token)) {
+            sendService.answerCallback(callbackQueryId, "Список уже изменился");
+            return metrics.timed(Metrics.HANDLER, Tags.of("type", "callback", "action", "STALE"),
+                    callBackService.handleStale(update));
+        }
 
         sendService.answerCallback(callbackQueryId);
 
-        return switch (action) {
+        Uni<Void> handling = switch (action) {
             case BUY -> callBackService.handleBuy(update);
             case REFRESH -> callBackService.handleRefresh(update);
             case CLEAR_ALL -> callBackService.handleClearAll(update);
@@ -128,8 +111,11 @@ public class HandleServiceImpl implements HandleService {
             case EDIT_PRODUCT -> callBackService.handleEditProduct(update);
             case DELETE_PRODUCT -> callBackService.handleDeleteProduct(update);
             case CONFIRM_LEAVE_FAMILY -> callBackService.handleConfirmLeaveFamily(update);
+            case PAGE_PREV, PAGE_NEXT -> callBackService.handlePage(update);
+            case SUGGESTIONS -> callBackService.handleSuggestions(update);
+            case ADD_SUGGESTION -> callBackService.handleAddSuggestion(update);
             case UNKNOWN -> Uni.createFrom().voidItem();
         };
-
+        return metrics.timed(Metrics.HANDLER, Tags.of("type", "callback", "action", action.name()), handling);
     }
 }
@@ -1,31 +1,131 @@
 package ru.syncfamily.service.impl;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class ListParser {
+
+    /**
+     * Маркеры списков, которые вставляют из заметок: "- молоко", "• хлеб", "* сыр".
+     */
+    private static final String BULLETS = "-–—•·*+";
+
+    private final String delimiters;
+
+    /**
+     * @param delimiters символы-разделители продуктов через {@code |}, например {@code ",|;|\n"}
+     */
+    @Inject
+    public ListParser(@ConfigProperty(name = "sync-family.parser.delimiters", defaultValue = ",|;|\n") String delimiters) {
+        this.delimiters = toDelimiterChars(delimiters);
+    }
+
     /**
-     * Превращает строку вида "Хлеб, молоко; сыр\nяблоки" в список объектов.
-     * Используем Regex для поддержки разных разделителей: запятая, точка с запятой, перенос строки.
+     * Превращает строку вида "Хлеб, молоко; сыр\nяблоки" в список продуктов за один проход по тексту:
+     * отрезает маркеры и номера ("1. хлеб", "- молоко"), схлопывает пробелы, делает первую букву заглавной,
+     * остальные строчными, и пропускает повторы внутри сообщения.
      */
     public List<String> parse(String text) {
         if (text == null || text.isBlank()) {
             return List.of();
         }
 
-        return Arrays.stream(text.split("[,;\\n]+")) // Режем по , ; или новой строке
-                .map(String::trim)                  // Убираем пробелы по краям
-                .filter(item -> !item.isEmpty())    // Убираем пустые строки
-                .map(this::capitalize)              // Делаем первую букву заглавной (для красоты)
-                .collect(Collectors.toList());
+        var items = new ArrayList<String>();
+        var name = new StringBuilder(32);
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            i = skipPrefix(text, i);
+            boolean space = false;
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (isDelimiter(c)) {
+                    break;
+                }
+                if (Character.isWhitespace(c)) {
+                    space = !name.isEmpty();
+                    continue;
+                }
+                if (space) {
+                    name.append(' ');
+                    space = false;
+                }
+                name.append(name.isEmpty() ? Character.toUpperCase(c) : Character.toLowerCase(c));
+            }
+            i++; // Разделитель
+            if (!name.isEmpty()) {
+                addDistinct(items, name);
+                name.setLength(0);
+            }
+        }
+        return items;
     }
 
-    private String capitalize(String str) {
-        if (str == null || str.isEmpty()) return str;
-        return str.substring(0, 1).toUpperCase() + str.substring(1).toLowerCase();
+    /**
+     * Пропускает пробелы, маркеры списка и номера вида "1." или "2)" в начале продукта.
+     * Число без точки или скобки ("2 л молока") — часть названия.
+     */
+    private int skipPrefix(String text, int from) {
+        int length = text.length();
+        int i = from;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isDelimiter(c)) {
+                return i;
+            }
+            if (Character.isWhitespace(c) || BULLETS.indexOf(c) >= 0) {
+                i++;
+                continue;
+            }
+            if (!Character.isDigit(c)) {
+                return i;
+            }
+            int end = i;
+            while (end < length && Character.isDigit(text.charAt(end))) {
+                end++;
+            }
+            boolean numbered = end < length
+                    && (text.charAt(end) == '.' || text.charAt(end) == ')')
+                    && (end + 1 == length || Character.isWhitespace(text.charAt(end + 1)) || isDelimiter(text.charAt(end + 1)));
+            if (!numbered) {
+                return i;
+            }
+            i = end + 1;
+        }
+        return i;
+    }
+
+    private boolean isDelimiter(char c) {
+        return delimiters.indexOf(c) >= 0;
+    }
+
+    /**
+     * Продуктов в одном сообщении немного, поэтому повтор ищем линейно и без лишних строк:
+     * строка создаётся только для нового названия.
+     */
+    private static void addDistinct(List<String> items, CharSequence name) {
+        for (String item : items) {
+            if (item.contentEquals(name)) {
+                return;
+            }
+        }
+        items.add(name.toString());
+    }
+
+    private static String toDelimiterChars(String configured) {
+        var chars = new StringBuilder();
+        for (String delimiter : configured.split("\\|")) {
+            if (delimiter.length() != 1) {
+                throw new IllegalStateException(
+                        "sync-family.parser.delimiters: разделитель должен быть одним символом: '" + delimiter + "'");
+            }
+            chars.append(delimiter);
+        }
+        return chars.toString();
     }
 }
@@ -0,0 +1,113 @@
+package ru.syncfamily.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.telegram.telegrambots.meta.api.methods.botapimethods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.message.Message;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Отпечатки последнего доставленного сообщения в чатах: сам текст с разметкой и ссылка на клавиатуру.
+ * Позволяют не отправлять правку, которая ничего не меняет, и править только клавиатуру,
+ * если текст остался прежним. Сравниваются значения, а не хэши: совпадение хэшей разных списков
+ * оставило бы в чате старый список. Клавиатуры страниц берутся из кэша готовых клавиатур,
+ * поэтому обычно сравнение заканчивается на совпадении ссылок.
+ * <p>
+ * Отпечатков не больше {@code max-size}: вытесненный чат просто получит правку без сокращения.
+ */
+@ApplicationScoped
+public class MessageFingerprints {
+
+    @ConfigProperty(name = "sync-family.cache.fingerprints.max-size", defaultValue = "100000")
+    long maxSize;
+
+    @ConfigProperty(name = "sync-family.cache.fingerprints.expire-after-access", defaultValue = "1h")
+    Duration expireAfterAccess;
+
+    private Cache<Long, Fingerprint> byChat;
+
+    @PostConstruct
+    void init() {
+        byChat = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    /**
+     * Сокращает правку до необходимой: null — правка ничего не меняет,
+     * {@link EditMessageReplyMarkup} — изменилась только клавиатура, иначе исходный метод.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Serializable> BotApiMethod<T> reduce(Long chatId, BotApiMethod<T> method) {
+        if (chatId == null || !(method instanceof EditMessageText edit)) {
+            return method;
+        }
+        var last = byChat.getIfPresent(chatId);
+        if (last == null || !last.messageId().equals(edit.getMessageId())) {
+            return method;
+        }
+        var next = Fingerprint.of(edit.getMessageId(), edit.getText(), edit.getParseMode(), edit.getReplyMarkup());
+        if (!last.sameText(next)) {
+            return method;
+        }
+        if (last.sameMarkup(next)) {
+            return null;
+        }
+        BotApiMethod<?> markupOnly = EditMessageReplyMarkup.builder()
+                .chatId(edit.getChatId())
+                .messageId(edit.getMessageId())
+                .replyMarkup(edit.getReplyMarkup())
+                .build();
+        return (BotApiMethod<T>) markupOnly;
+    }
+
+    /**
+     * Запоминает состояние сообщения после успешной доставки метода.
+     */
+    public void delivered(Long chatId, BotApiMethod<?> method, Serializable result) {
+        if (chatId == null) {
+            return;
+        }
+        if (method instanceof SendMessage send && result instanceof Message message) {
+            byChat.put(chatId, Fingerprint.of(message.getMessageId(), send.getText(), send.getParseMode(), send.getReplyMarkup()));
+        } else if (method instanceof EditMessageText edit) {
+            byChat.put(chatId, Fingerprint.of(edit.getMessageId(), edit.getText(), edit.getParseMode(), edit.getReplyMarkup()));
+        } else if (method instanceof EditMessageReplyMarkup edit) {
+            byChat.asMap().computeIfPresent(chatId, (id, last) -> last.messageId().equals(edit.getMessageId())
+                    ? last.withMarkup(edit.getReplyMarkup())
+                    : null);
+        } else if (method instanceof DeleteMessage delete) {
+            byChat.asMap().computeIfPresent(chatId, (id, last) -> last.messageId().equals(delete.getMessageId()) ? null : last);
+        }
+    }
+
+    private record Fingerprint(Integer messageId, String text, String parseMode, Object markup) {
+
+        static Fingerprint of(Integer messageId, String text, String parseMode, Object markup) {
+            return new Fingerprint(messageId, text, parseMode, markup);
+        }
+
+        Fingerprint withMarkup(Object markup) {
+            return new Fingerprint(messageId, text, parseMode, markup);
+        }
+
+        boolean sameText(Fingerprint other) {
+            return Objects.equals(text, other.text) && Objects.equals(parseMode, other.parseMode);
+        }
+
+        boolean sameMarkup(Fingerprint other) {
+            return markup == other.markup || Objects.equals(markup, other.markup);
+        }
+    }
+}
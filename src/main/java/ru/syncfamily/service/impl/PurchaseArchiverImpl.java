@@ -0,0 +1,85 @@
+package ru.syncfamily.service.impl;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.repository.PostgresDb;
+import ru.syncfamily.repository.PurchaseHistoryRepository;
+import ru.syncfamily.service.PurchaseArchiver;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+/**
+ * Держит shopping_list маленьким: купленные продукты через {@code bought-retention} уходят
+ * в секционированную по месяцам таблицу purchase_history. Каждая пачка — отдельная короткая транзакция,
+ * чтобы не держать блокировки строк, которые в это время могут нажимать пользователи.
+ * Секции текущего и следующего месяца создаются при старте и перед каждым запуском: секции по умолчанию нет,
+ * и очистка списка в месяце без секции упала бы.
+ */
+@Slf4j
+@ApplicationScoped
+@RequiredArgsConstructor
+public class PurchaseArchiverImpl implements PurchaseArchiver {
+
+    // Текущий и следующий месяц: секция на момент архивации всегда уже есть
+    private static final int PARTITIONS_AHEAD = 2;
+
+    private final PostgresDb db;
+    private final PurchaseHistoryRepository purchaseHistoryRepository;
+
+    @ConfigProperty(name = "sync-family.history.bought-retention", defaultValue = "24h")
+    Duration boughtRetention;
+
+    @ConfigProperty(name = "sync-family.history.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "sync-family.history.max-batches", defaultValue = "20")
+    int maxBatches;
+
+    @Override
+    public Uni<Integer> archive() {
+        var boughtBefore = OffsetDateTime.now().minus(boughtRetention);
+        return createPartitions()
+                .chain(() -> archiveBatches(boughtBefore, 1, 0));
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        createPartitions().await().indefinitely();
+    }
+
+    @Scheduled(every = "${sync-family.history.archive-interval:10m}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> scheduledArchive() {
+        return archive()
+                .invoke(archived -> {
+                    if (archived > 0) {
+                        log.info("В историю покупок перенесено {} продуктов", archived);
+                    }
+                })
+                .replaceWithVoid();
+    }
+
+    private Uni<Void> createPartitions() {
+        return db.async(ctx -> {
+            purchaseHistoryRepository.createPartitions(ctx, YearMonth.now(ZoneOffset.UTC), PARTITIONS_AHEAD);
+            return null;
+        }).replaceWithVoid();
+    }
+
+    /**
+     * Неполная пачка значит, что переносить больше нечего; остальное после {@code max-batches} — в следующий запуск.
+     */
+    private Uni<Integer> archiveBatches(OffsetDateTime boughtBefore, int batch, int archived) {
+        return db.async(ctx -> purchaseHistoryRepository.archiveBought(ctx, boughtBefore, batchSize))
+                .chain(moved -> moved < batchSize || batch >= maxBatches
+                        ? Uni.createFrom().item(archived + moved)
+                        : archiveBatches(boughtBefore, batch + 1, archived + moved));
+    }
+}
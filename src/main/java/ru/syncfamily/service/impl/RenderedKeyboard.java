@@ -0,0 +1,48 @@
+package ru.syncfamily.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Клавиатура, уже сериализованная в JSON: клиент Telegram вставляет готовый фрагмент в тело запроса,
+ * не обходя заново строки и кнопки. Один экземпляр отправляется многим членам семьи, поэтому его не меняют.
+ */
+public final class RenderedKeyboard extends InlineKeyboardMarkup implements JsonSerializable {
+
+    // Настройки по умолчанию — как у ObjectMapper клиента Telegram, иначе фрагмент разойдётся с остальным телом
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String json;
+
+    private RenderedKeyboard(InlineKeyboardMarkup markup, String json) {
+        super(markup.getKeyboard());
+        this.json = json;
+    }
+
+    public static RenderedKeyboard of(InlineKeyboardMarkup markup) {
+        try {
+            return new RenderedKeyboard(markup, MAPPER.writeValueAsString(markup));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeRawValue(json);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers,
+                                  TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, serializers);
+    }
+}
@@ -1,40 +1,205 @@
 package ru.syncfamily.service.impl;
 
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.botapimethods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 import org.telegram.telegrambots.meta.generics.TelegramClient;
+import ru.syncfamily.config.BlockingExecutor;
+import ru.syncfamily.config.Metrics;
 import ru.syncfamily.service.SendService;
 
 import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @ApplicationScoped
 @RequiredArgsConstructor
 public class SendServiceImpl implements SendService {
+
+    private static final int BAD_REQUEST = 400;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String NOT_MODIFIED = "message is not modified";
+
     private final TelegramClient telegramClient;
+    private final TelegramRateLimiter rateLimiter;
+    private final MessageFingerprints fingerprints;
+    private final BlockingExecutor blockingExecutor;
+    private final Metrics metrics;
+
+    @ConfigProperty(name = "sync-family.telegram.rate-limit.max-attempts", defaultValue = "5")
+    int maxAttempts;
 
     @Override
     public <T extends Serializable> T send(BotApiMethod<T> message) {
+        // Синхронная отправка проходит через тот же ограничитель частоты
+        return blockingExecutor.withTelegramPermit(() -> sendAsync(message).await().indefinitely());
+    }
+
+    @Override
+    public <T extends Serializable> Uni<T> sendAsync(BotApiMethod<T> message) {
+        return deliverAsync(message)
+                .onFailure().recoverWithItem(e -> {
+                    log.error("Ошибка отправки сообщения", e);
+                    return null;
+                });
+    }
+
+    @Override
+    public <T extends Serializable> Uni<T> deliverAsync(BotApiMethod<T> message) {
+        Long chatId = getChatId(message);
+        var method = fingerprints.reduce(chatId, message);
+        if (method == null) {
+            log.debug("Правка сообщения в чате {} ничего не меняет, пропускаем", chatId);
+            return Uni.createFrom().nullItem();
+        }
+        return deliver(method, chatId, 1)
+                .invoke(result -> fingerprints.delivered(chatId, method, result))
+                .onFailure(SendServiceImpl::isNotModified).recoverWithItem(e -> {
+                    // Сообщение уже в нужном состоянии: запоминаем это, чтобы не повторять правку
+                    fingerprints.delivered(chatId, method, null);
+                    return null;
+                })
+                .onFailure(SendServiceImpl::isRejected).recoverWithItem(e -> {
+                    log.error("Telegram отклонил запрос в чат {}", chatId, e);
+                    return null;
+                });
+    }
+
+    /**
+     * Отправляет запрос, дождавшись токена ограничителя. На 429 не теряет запрос,
+     * а переносит его на retry_after секунд (не больше {@code maxAttempts} попыток).
+     */
+    private <T extends Serializable> Uni<T> deliver(BotApiMethod<T> message, Long chatId, int attempt) {
+        return rateLimiter.acquire(chatId)
+                .chain(() -> timed(message, Uni.createFrom().completionStage(() -> executeAsync(message))))
+                .onFailure(e -> getRetryAfter(e) != null && attempt < maxAttempts).recoverWithUni(e -> {
+                    int retryAfter = getRetryAfter(e);
+                    log.warn("Telegram ограничил частоту для чата {}: повтор через {} с (попытка {})",
+                            chatId, retryAfter, attempt);
+                    rateLimiter.retryAfter(chatId, retryAfter);
+                    return deliver(message, chatId, attempt + 1);
+                });
+    }
+
+    /**
+     * Замеряет один запрос к Telegram (без ожидания ограничителя) с тегами метода и исхода:
+     * success, not_modified, rate_limited, error или cancelled.
+     */
+    private <T> Uni<T> timed(BotApiMethod<?> message, Uni<T> call) {
+        return Uni.createFrom().deferred(() -> {
+            var sample = Timer.start(metrics.registry());
+            return call.onTermination().invoke((item, failure, cancelled) ->
+                    sample.stop(telegramTimer(message.getMethod(), cancelled ? "cancelled" : outcome(failure))));
+        });
+    }
+
+    private Timer telegramTimer(String method, String outcome) {
+        return metrics.timer(Metrics.TELEGRAM, Tags.of("method", method, "outcome", outcome));
+    }
+
+    private <T extends Serializable> CompletableFuture<T> executeAsync(BotApiMethod<T> message) {
         try {
-            return telegramClient.execute(message);
+            return telegramClient.executeAsync(message);
         } catch (TelegramApiException e) {
-            log.error("Ошибка отправки сообщения", e);
+            return CompletableFuture.failedFuture(e);
         }
-        return null;
     }
 
     @Override
     public void answerCallback(String callbackQueryId) {
-        try {
-            telegramClient.execute(AnswerCallbackQuery.builder()
+        answerCallback(callbackQueryId, null);
+    }
+
+    @Override
+    public void answerCallback(String callbackQueryId, String text) {
+        blockingExecutor.withTelegramPermit(() -> {
+            var answer = AnswerCallbackQuery.builder()
                     .callbackQueryId(callbackQueryId)
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при ответе на CallbackQuery: {}", e.getMessage());
+                    .text(text)
+                    .build();
+            var sample = Timer.start(metrics.registry());
+            try {
+                var answered = telegramClient.execute(answer);
+                sample.stop(telegramTimer(answer.getMethod(), outcome(null)));
+                return answered;
+            } catch (TelegramApiException e) {
+                sample.stop(telegramTimer(answer.getMethod(), outcome(e)));
+                log.error("Ошибка при ответе на CallbackQuery: {}", e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    private static String outcome(Throwable failure) {
+        if (failure == null) {
+            return "success";
+        }
+        if (isNotModified(failure)) {
+            return "not_modified";
+        }
+        return getRetryAfter(failure) != null ? "rate_limited" : "error";
+    }
+
+    private static boolean isNotModified(Throwable failure) {
+        for (Throwable e = failure; e != null; e = e.getCause()) {
+            if (e instanceof TelegramApiRequestException requestException
+                    && Integer.valueOf(BAD_REQUEST).equals(requestException.getErrorCode())
+                    && requestException.getApiResponse() != null
+                    && requestException.getApiResponse().contains(NOT_MODIFIED)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Telegram ответил ошибкой по существу запроса (не 429): тот же запрос получит тот же ответ.
+     */
+    private static boolean isRejected(Throwable failure) {
+        for (Throwable e = failure; e != null; e = e.getCause()) {
+            if (e instanceof TelegramApiRequestException requestException
+                    && requestException.getErrorCode() != null
+                    && requestException.getErrorCode() != TOO_MANY_REQUESTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Integer getRetryAfter(Throwable failure) {
+        for (Throwable e = failure; e != null; e = e.getCause()) {
+            if (e instanceof TelegramApiRequestException requestException
+                    && Integer.valueOf(TOO_MANY_REQUESTS).equals(requestException.getErrorCode())
+                    && requestException.getParameters() != null) {
+                return requestException.getParameters().getRetryAfter();
+            }
+        }
+        return null;
+    }
+
+    private static Long getChatId(BotApiMethod<?> message) {
+        String chatId = null;
+        if (message instanceof SendMessage send) {
+            chatId = send.getChatId();
+        } else if (message instanceof EditMessageText edit) {
+            chatId = edit.getChatId();
+        } else if (message instanceof EditMessageReplyMarkup edit) {
+            chatId = edit.getChatId();
+        } else if (message instanceof DeleteMessage delete) {
+            chatId = delete.getChatId();
         }
+        return chatId == null ? null : Long.valueOf(chatId);
     }
 }
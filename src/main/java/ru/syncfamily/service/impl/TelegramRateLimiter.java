@@ -0,0 +1,152 @@
+package ru.syncfamily.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.config.Metrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограничитель частоты запросов к Telegram: общий бакет на бота и отдельный бакет на каждый чат.
+ * Запрос не отклоняется, а откладывается до момента, когда в обоих бакетах есть токен.
+ * Глубина очереди — gauge {@link Metrics#TELEGRAM_QUEUE_DEPTH}, отложенные запросы и время их ожидания —
+ * таймер {@link Metrics#TELEGRAM_THROTTLE_WAIT}.
+ */
+@Slf4j
+@ApplicationScoped
+@RequiredArgsConstructor
+public class TelegramRateLimiter {
+
+    /**
+     * Бакет чата, к которому не обращались столько времени, давно полон и пересоздаётся без потерь.
+     */
+    private static final Duration IDLE_BUCKET = Duration.ofMinutes(5);
+
+    private final Metrics metrics;
+
+    @ConfigProperty(name = "sync-family.telegram.rate-limit.global-per-second", defaultValue = "30")
+    double globalPerSecond;
+
+    @ConfigProperty(name = "sync-family.telegram.rate-limit.chat-per-second", defaultValue = "1")
+    double chatPerSecond;
+
+    @ConfigProperty(name = "sync-family.telegram.rate-limit.chat-burst", defaultValue = "3")
+    int chatBurst;
+
+    private final Cache<Long, TokenBucket> chatBuckets = Caffeine.newBuilder()
+            .expireAfterAccess(IDLE_BUCKET)
+            .build();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    private TokenBucket globalBucket;
+    private Timer throttleWait;
+
+    @PostConstruct
+    void init() {
+        globalBucket = new TokenBucket(globalPerSecond, Math.max(1, (int) globalPerSecond), System.nanoTime());
+        metrics.registry().gauge(Metrics.TELEGRAM_QUEUE_DEPTH, queueDepth);
+        throttleWait = metrics.timer(Metrics.TELEGRAM_THROTTLE_WAIT, Tags.empty());
+    }
+
+    /**
+     * Возвращает Uni, который завершается, когда запрос в указанный чат можно отправлять.
+     * Сначала берётся токен чата, а общий токен — только к моменту, когда чат готов принять запрос:
+     * иначе запрос, ждущий свой чат, держал бы общий токен, и запросы в другие чаты ждали бы зря.
+     *
+     * @param chatId чат получателя или null, если метод не привязан к чату
+     */
+    public Uni<Void> acquire(Long chatId) {
+        long startedAt = System.nanoTime();
+        long chatWaitNanos = chatId == null ? 0 : chatBucket(chatId, startedAt).reserve(startedAt);
+        if (chatWaitNanos > 0) {
+            return throttled(chatId, startedAt, chatWaitNanos, delay(chatWaitNanos).chain(this::acquireGlobal));
+        }
+        long globalWaitNanos = globalBucket.reserve(startedAt);
+        if (globalWaitNanos <= 0) {
+            return Uni.createFrom().voidItem();
+        }
+        return throttled(chatId, startedAt, globalWaitNanos, delay(globalWaitNanos));
+    }
+
+    /**
+     * Учитывает retry_after из ответа 429: бакет чата (или общий) не выдаёт токены указанное время.
+     */
+    public void retryAfter(Long chatId, int seconds) {
+        long now = System.nanoTime();
+        long pauseNanos = TimeUnit.SECONDS.toNanos(seconds);
+        if (chatId != null) {
+            chatBucket(chatId, now).pause(now, pauseNanos);
+        } else {
+            globalBucket.pause(now, pauseNanos);
+        }
+    }
+
+    private Uni<Void> acquireGlobal() {
+        long waitNanos = globalBucket.reserve(System.nanoTime());
+        return waitNanos <= 0 ? Uni.createFrom().voidItem() : delay(waitNanos);
+    }
+
+    private Uni<Void> throttled(Long chatId, long startedAt, long waitNanos, Uni<Void> wait) {
+        queueDepth.incrementAndGet();
+        log.debug("Запрос в чат {} отложен на {} мс", chatId, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        return wait.eventually(() -> {
+            queueDepth.decrementAndGet();
+            throttleWait.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private static Uni<Void> delay(long nanos) {
+        return Uni.createFrom().voidItem()
+                .onItem().delayIt().by(Duration.ofNanos(nanos));
+    }
+
+    private TokenBucket chatBucket(long chatId, long now) {
+        return chatBuckets.get(chatId, id -> new TokenBucket(chatPerSecond, chatBurst, now));
+    }
+
+    /**
+     * Бакет с резервированием: токены можно брать в долг, а долг превращается во время ожидания.
+     */
+    private static final class TokenBucket {
+
+        private final double tokensPerNano;
+        private final double capacity;
+
+        private double tokens;
+        private long updatedAt;
+
+        TokenBucket(double perSecond, int capacity, long now) {
+            this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.updatedAt = now;
+        }
+
+        synchronized long reserve(long now) {
+            refill(now);
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+
+        synchronized void pause(long now, long pauseNanos) {
+            refill(now);
+            tokens = Math.min(tokens, 0) - pauseNanos * tokensPerNano;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+            updatedAt = now;
+        }
+    }
+}
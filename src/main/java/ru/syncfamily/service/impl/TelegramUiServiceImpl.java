@@ -1,23 +1,63 @@
 package ru.syncfamily.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardRow;
 import ru.syncfamily.service.TelegramUiService;
 import ru.syncfamily.service.model.CallBack;
-import ru.syncfamily.service.model.Product;
+import ru.syncfamily.service.model.CallBackToken;
+import ru.syncfamily.service.model.ProductKey;
+import ru.syncfamily.service.model.ProductPage;
+import ru.syncfamily.service.model.Suggestion;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class TelegramUiServiceImpl implements TelegramUiService {
 
+    @ConfigProperty(name = "sync-family.cache.keyboards.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @ConfigProperty(name = "sync-family.cache.keyboards.expire-after-access", defaultValue = "30m")
+    Duration expireAfterAccess;
+
+    /**
+     * Ключ — версия списка семьи и курсор страницы: любое изменение списка меняет версию, поэтому при равных
+     * версии и курсоре страница та же, а ключ не держит в памяти копию продуктов страницы.
+     * Страница из снимка семьи одна на всех её членов, поэтому клавиатура строится и сериализуется один раз.
+     */
+    private Cache<KeyboardKey, RenderedKeyboard> keyboards;
+
+    @PostConstruct
+    void init() {
+        keyboards = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    @Override
+    public InlineKeyboardMarkup shoppingListKeyboard(long familyId, ProductPage page, boolean edit) {
+        return keyboards.get(new KeyboardKey(familyId, page.familyVersion(), page.after(), edit),
+                key -> RenderedKeyboard.of(createShoppingListKeyboard(page, edit)));
+    }
+
     @Override
-    public InlineKeyboardMarkup createShoppingListKeyboard(List<Product> products, boolean edit) {
+    public InlineKeyboardMarkup createShoppingListKeyboard(ProductPage page, boolean edit) {
+        var products = page.products();
+        // Кнопки продуктов несут версию страницы (нажатие на устаревшем списке распознаётся без базы)
+        // и версию списка семьи, которую ожидает изменение по кнопке
+        int listVersion = CallBackToken.listVersion(products);
         if (edit) {
-            return createEditListKeyboard(products);
+            return createEditListKeyboard(page, listVersion);
         }
         List<InlineKeyboardRow> rows = products.stream().map(product -> {
             // Формируем текст: если куплено, зачеркиваем
@@ -25,20 +65,27 @@ public class TelegramUiServiceImpl implements TelegramUiService {
 
             var button = InlineKeyboardButton.builder()
                     .text(label)
-                    .callbackData(CallBack.BUY.getAction() + product.getId())
+                    .callbackData(CallBackToken.of(CallBack.BUY, product.getId(), listVersion, page.familyVersion()).encode())
                     .build();
             return new InlineKeyboardRow(button);
         }).collect(Collectors.toList());
 
+        addPageRow(rows, page, listVersion);
+
+        // Частые покупки нужны и пустому списку — с них обычно и начинают
+        rows.add(new InlineKeyboardRow(InlineKeyboardButton.builder()
+                .text("💡 Частые покупки")
+                .callbackData(CallBack.SUGGESTIONS.callbackData())
+                .build()));
 
         if (!products.isEmpty()) {
             rows.add(new InlineKeyboardRow(InlineKeyboardButton.builder()
                     .text("⚙ Редактировать список")
-                    .callbackData(CallBack.TOGGLE_MODE_EDIT.getAction()) // Сначала просим подтверждение
+                    .callbackData(CallBack.TOGGLE_MODE_EDIT.callbackData()) // Сначала просим подтверждение
                     .build()));
             rows.add(new InlineKeyboardRow(InlineKeyboardButton.builder()
                     .text("\uD83C\uDFC1 Завершить покупки")
-                    .callbackData(CallBack.CONFIRM_CLEAR.getAction()) // Сначала просим подтверждение
+                    .callbackData(CallBack.CONFIRM_CLEAR.callbackData()) // Сначала просим подтверждение
                     .build()));
 
         }
@@ -47,12 +94,13 @@ public class TelegramUiServiceImpl implements TelegramUiService {
     }
 
 
-    private InlineKeyboardMarkup createEditListKeyboard(List<Product> products) {
+    private InlineKeyboardMarkup createEditListKeyboard(ProductPage page, int listVersion) {
+        var products = page.products();
         List<InlineKeyboardRow> rows = products.stream().map(product -> {
 
             var editButton = InlineKeyboardButton.builder()
                     .text("✏️ " + product.getProductName())
-                    .callbackData(CallBack.CONFIRM_EDIT_PRODUCT.getAction() + product.getId())
+                    .callbackData(CallBackToken.of(CallBack.CONFIRM_EDIT_PRODUCT, product.getId(), listVersion, page.familyVersion()).encode())
                     .build();
 
 
@@ -60,16 +108,63 @@ public class TelegramUiServiceImpl implements TelegramUiService {
 
         }).collect(Collectors.toList());
 
+        addPageRow(rows, page, listVersion);
 
         if (!products.isEmpty()) {
 
             rows.add(new InlineKeyboardRow(InlineKeyboardButton.builder()
                     .text("⬅️ Назад к покупкам")
-                    .callbackData(CallBack.REFRESH.getAction()) // Сначала просим подтверждение
+                    .callbackData(CallBack.REFRESH.callbackData()) // Сначала просим подтверждение
                     .build()));
 
         }
 
         return new InlineKeyboardMarkup(rows);
     }
+
+    @Override
+    public InlineKeyboardMarkup createSuggestionsKeyboard(List<Suggestion> suggestions) {
+        List<InlineKeyboardRow> rows = new ArrayList<>();
+        // По две подсказки в ряд: названия короткие, а список подсказок не должен быть длиннее списка покупок
+        for (int i = 0; i < suggestions.size(); i += 2) {
+            var row = new InlineKeyboardRow();
+            for (var suggestion : suggestions.subList(i, Math.min(i + 2, suggestions.size()))) {
+                row.add(InlineKeyboardButton.builder()
+                        .text("➕ " + suggestion.productName())
+                        .callbackData(CallBackToken.of(CallBack.ADD_SUGGESTION, suggestion.id(), 0, 0).encode())
+                        .build());
+            }
+            rows.add(row);
+        }
+        rows.add(new InlineKeyboardRow(InlineKeyboardButton.builder()
+                .text("⬅️ Назад к покупкам")
+                .callbackData(CallBack.REFRESH.callbackData())
+                .build()));
+        return new InlineKeyboardMarkup(rows);
+    }
+
+    /**
+     * Листание страниц; на единственной странице строки нет.
+     */
+    private static void addPageRow(List<InlineKeyboardRow> rows, ProductPage page, int listVersion) {
+        var row = new InlineKeyboardRow();
+        if (page.hasPrevious()) {
+            row.add(InlineKeyboardButton.builder()
+                    .text("◀️ Назад")
+                    .callbackData(CallBackToken.of(CallBack.PAGE_PREV, 0, listVersion, 0).encode())
+                    .build());
+        }
+        if (page.hasNext()) {
+            row.add(InlineKeyboardButton.builder()
+                    .text("Дальше ▶️")
+                    .callbackData(CallBackToken.of(CallBack.PAGE_NEXT, 0, listVersion, 0).encode())
+                    .build());
+        }
+        if (!row.isEmpty()) {
+            rows.add(row);
+        }
+    }
+
+    private record KeyboardKey(long familyId, long familyVersion, ProductKey after, boolean edit) {
+    }
 }
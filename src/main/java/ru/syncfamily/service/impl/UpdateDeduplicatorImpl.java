@@ -0,0 +1,131 @@
+package ru.syncfamily.service.impl;
+
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.repository.DbContext;
+import ru.syncfamily.repository.DuplicateUpdateException;
+import ru.syncfamily.repository.PostgresDb;
+import ru.syncfamily.repository.ProcessedUpdateRepository;
+import ru.syncfamily.service.UpdateDeduplicator;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.BitSet;
+
+/**
+ * Дедупликация обновлений по update_id: скользящее окно последних id в памяти отсекает
+ * повторы без похода в базу, а таблица processed_updates — повторы после рестарта и между узлами.
+ * Обновление, которое меняет данные, отмечается в той же транзакции, что и изменение (см. {@link #claim}):
+ * сбой обработки откатывает и отметку, и повторная доставка обработает обновление заново.
+ * Обновления, которые только отвечают пользователю, отмечаются отдельно после успешной обработки.
+ */
+@Slf4j
+@ApplicationScoped
+@RequiredArgsConstructor
+public class UpdateDeduplicatorImpl implements UpdateDeduplicator {
+
+    private final PostgresDb db;
+    private final ProcessedUpdateRepository processedUpdateRepository;
+
+    @ConfigProperty(name = "sync-family.dedup.window-size", defaultValue = "65536")
+    int windowSize;
+
+    @ConfigProperty(name = "sync-family.dedup.retention", defaultValue = "48h")
+    Duration retention;
+
+    private UpdateWindow window;
+
+    @PostConstruct
+    void init() {
+        window = new UpdateWindow(windowSize);
+    }
+
+    @Override
+    public Uni<Boolean> isProcessed(long updateId) {
+        if (window.contains(updateId)) {
+            log.debug("Обновление {} уже обработано, пропускаем", updateId);
+            return Uni.createFrom().item(true);
+        }
+        return db.async(ctx -> processedUpdateRepository.isProcessed(ctx, updateId))
+                .invoke(processed -> {
+                    if (processed) {
+                        window.add(updateId);
+                        log.debug("Обновление {} уже обработано ранее, пропускаем", updateId);
+                    }
+                });
+    }
+
+    @Override
+    public void claim(DbContext ctx, long updateId) {
+        // Гонку двух доставок решает база (уникальный ключ): проигравшая транзакция откатывается
+        if (!processedUpdateRepository.claim(ctx, updateId)) {
+            throw new DuplicateUpdateException(updateId);
+        }
+        ctx.afterCommit(() -> window.add(updateId));
+    }
+
+    @Override
+    public Uni<Void> markProcessed(long updateId) {
+        if (window.contains(updateId)) {
+            return Uni.createFrom().voidItem();
+        }
+        return db.async(ctx -> processedUpdateRepository.claim(ctx, updateId))
+                .invoke(() -> window.add(updateId))
+                .replaceWithVoid();
+    }
+
+    @Scheduled(every = "${sync-family.dedup.prune-interval:1h}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> prune() {
+        var before = OffsetDateTime.now().minus(retention);
+        return db.async(ctx -> processedUpdateRepository.deleteProcessedBefore(ctx, before))
+                .invoke(deleted -> log.info("Удалено {} записей об обработанных обновлениях", deleted))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Кольцевой битсет на {@code size} последних id: бит id означает «обработано».
+     * id старше окна считаются неизвестными и проверяются по базе.
+     */
+    static final class UpdateWindow {
+
+        private final int size;
+        private final BitSet bits;
+        private long highest = -1;
+
+        UpdateWindow(int size) {
+            this.size = size;
+            this.bits = new BitSet(size);
+        }
+
+        synchronized boolean contains(long updateId) {
+            return isInside(updateId) && bits.get(slot(updateId));
+        }
+
+        synchronized void add(long updateId) {
+            if (updateId > highest) {
+                // Сдвигаем окно: слоты, которые переходят к новым id, очищаем
+                long from = Math.max(highest + 1, updateId - size + 1);
+                for (long id = from; id <= updateId; id++) {
+                    bits.clear(slot(id));
+                }
+                highest = updateId;
+            }
+            if (isInside(updateId)) {
+                bits.set(slot(updateId));
+            }
+        }
+
+        private boolean isInside(long updateId) {
+            return highest >= 0 && updateId <= highest && updateId > highest - size;
+        }
+
+        private int slot(long updateId) {
+            return (int) Math.floorMod(updateId, (long) size);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.syncfamily.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.syncfamily.config.BlockingExecutor;
+import ru.syncfamily.repository.FamilyRepository;
+import ru.syncfamily.service.UpdateDispatcher;
+import ru.syncfamily.service.model.User;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+@Slf4j
+@ApplicationScoped
+@RequiredArgsConstructor
+public class UpdateDispatcherImpl implements UpdateDispatcher {
+
+    private final BlockingExecutor blockingExecutor;
+    private final FamilyRepository familyRepository;
+
+    @ConfigProperty(name = "sync-family.dispatcher.lanes", defaultValue = "0")
+    int lanesCount;
+
+    @ConfigProperty(name = "sync-family.dispatcher.max-bound-chats", defaultValue = "100000")
+    long maxBoundChats;
+
+    private Cache<Long, Long> familyByChat;
+
+    private Lane[] lanes;
+
+    @PostConstruct
+    void init() {
+        int count = lanesCount > 0 ? lanesCount : Runtime.getRuntime().availableProcessors() * 2;
+        lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane();
+        }
+        familyByChat = Caffeine.newBuilder()
+                .maximumSize(maxBoundChats)
+                .build();
+        log.info("Диспетчер обновлений: {} полос", count);
+    }
+
+    @Override
+    public void dispatch(long key, Supplier<Uni<Void>> task) {
+        lanes[laneIndex(key)].submit(task);
+    }
+
+    /**
+     * Семья чата, которого нет среди привязок (вытеснен или узел недавно запущен), берётся из кэша пользователей
+     * и привязывается. Если чата нет и там, обновление идёт в полосу по chatId: базу здесь читать нельзя,
+     * webhook вызывает диспетчер на event loop. Такое обновление может выполняться параллельно с обновлениями
+     * семьи, пока обработчик не привяжет чат, но изменения списка от этого не теряются: каждое проверяет
+     * и увеличивает версию семьи одним оператором (gate в FamilyListSql), и из двух параллельных изменений
+     * по одной версии второе получает конфликт и не затирает первое.
+     */
+    @Override
+    public long laneKey(long chatId) {
+        var familyId = familyByChat.getIfPresent(chatId);
+        if (familyId != null) {
+            return familyId;
+        }
+        return familyRepository.findCachedMember(chatId)
+                .map(User::getFamilyId)
+                .map(cached -> {
+                    bindFamily(chatId, cached);
+                    return cached;
+                })
+                .orElse(chatId);
+    }
+
+    @Override
+    public void bindFamily(long chatId, long familyId) {
+        familyByChat.put(chatId, familyId);
+    }
+
+    @Override
+    public Optional<Long> familyOf(long chatId) {
+        return Optional.ofNullable(familyByChat.getIfPresent(chatId));
+    }
+
+    private int laneIndex(long key) {
+        // Перемешиваем биты, чтобы соседние id семей не попадали в соседние полосы
+        return Math.floorMod(Long.hashCode(key * 0x9E3779B97F4A7C15L), lanes.length);
+    }
+
+    /**
+     * Последовательная полоса: следующая задача стартует только после завершения Uni предыдущей.
+     * Сами задачи выполняются на исполнителе блокирующих участков, поэтому разные полосы идут параллельно.
+     */
+    private final class Lane {
+
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        synchronized void submit(Supplier<Uni<Void>> task) {
+            tail = tail.thenComposeAsync(ignored -> run(task), blockingExecutor.executor());
+        }
+
+        private CompletionStage<Void> run(Supplier<Uni<Void>> task) {
+            // Ошибка задачи не должна останавливать полосу
+            return Uni.createFrom().deferred(task::get)
+                    .onFailure().invoke(e -> log.error("Критическая ошибка при обработке Update: {}", e.getMessage()))
+                    .onFailure().recoverWithNull()
+                    .subscribeAsCompletionStage();
+        }
+    }
+}
@@ -7,19 +7,53 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public enum CallBack {
 
-    BUY("buy"),
-    CONFIRM_CLEAR("confirm_clear"),
-    TOGGLE_MODE_EDIT("toggle_mode_edit"),
-    CONFIRM_EDIT_PRODUCT("confirm_edit_product"),
-    CLEAR_ALL("clear_all"),
-    REFRESH("refresh"),
-    EDIT_PRODUCT("edit_product"),
-    DELETE_PRODUCT("delete_product"),
-    CONFIRM_LEAVE_FAMILY("confirm_leave_family"),
-    UNKNOWN("");
+    // Коды попадают в callback data уже отправленных кнопок: не менять и не переиспользовать
+    BUY("buy", 1),
+    CONFIRM_CLEAR("confirm_clear", 2),
+    TOGGLE_MODE_EDIT("toggle_mode_edit", 3),
+    CONFIRM_EDIT_PRODUCT("confirm_edit_product", 4),
+    CLEAR_ALL("clear_all", 5),
+    REFRESH("refresh", 6),
+    EDIT_PRODUCT("edit_product", 7),
+    DELETE_PRODUCT("delete_product", 8),
+    CONFIRM_LEAVE_FAMILY("confirm_leave_family", 9),
+    PAGE_PREV("page_prev", 10),
+    PAGE_NEXT("page_next", 11),
+    SUGGESTIONS("suggestions", 12),
+    ADD_SUGGESTION("add_suggestion", 13),
+    UNKNOWN("", 0);
 
+    private static final CallBack[] BY_CODE = new CallBack[16];
+
+    static {
+        for (CallBack callBack : values()) {
+            BY_CODE[callBack.code] = callBack;
+        }
+    }
+
+    /**
+     * Текстовый префикс старого формата callback data, см. {@link CallBackToken#decode}.
+     */
     private final String action;
+    private final int code;
+
+    public static CallBack byCode(int code) {
+        if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            return UNKNOWN;
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Callback data кнопки без продукта.
+     */
+    public String callbackData() {
+        return CallBackToken.of(this).encode();
+    }
 
+    /**
+     * Разбор старого формата "действие + id продукта" перебором префиксов.
+     */
     public static CallBack getAction(String action) {
         if (action == null) return UNKNOWN;
         for (CallBack a : CallBack.values()) {
@@ -0,0 +1,135 @@
+package ru.syncfamily.service.model;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Callback data кнопки: действие, id продукта и версии списка, по которому нарисована кнопка.
+ * <p>
+ * Формат: {@code ~} и base64url без паддинга от байтов
+ * {@code [формат][код действия][varint id][varint версия страницы][varint версия семьи]} —
+ * не больше 37 символов при лимите Telegram в 64 байта. Разбор не зависит от длины и набора действий;
+ * версии семьи нет в кнопках, отправленных до её появления, — она читается как 0.
+ * Данные без {@code ~} — кнопки, отправленные до появления токенов, разбираются по старому формату.
+ *
+ * @param listVersion   версия страницы (см. {@link #listVersion}); 0 — кнопка не привязана к версии
+ * @param familyVersion версия списка семьи ({@code families.version}), которую ожидает изменение по кнопке;
+ *                      0 — изменение выполняется без проверки версии
+ */
+public record CallBackToken(CallBack action, long productId, int listVersion, long familyVersion) {
+
+    private static final char PREFIX = '~';
+    private static final byte FORMAT = 1;
+    private static final int MAX_BYTES = 2 + 10 + 5 + 10;
+
+    private static final CallBackToken UNKNOWN = new CallBackToken(CallBack.UNKNOWN, 0, 0, 0);
+
+    public static CallBackToken of(CallBack action) {
+        return new CallBackToken(action, 0, 0, 0);
+    }
+
+    public static CallBackToken of(CallBack action, long productId, int listVersion, long familyVersion) {
+        return new CallBackToken(action, productId, listVersion, familyVersion);
+    }
+
+    /**
+     * Версия списка — хэш того, что видно на кнопках: порядка, id, названий и отметок о покупке.
+     * Считается одинаково на всех узлах и после рестарта; никогда не равна 0.
+     */
+    public static int listVersion(List<Product> products) {
+        int hash = 1;
+        for (Product product : products) {
+            hash = 31 * hash + Long.hashCode(product.getId());
+            hash = 31 * hash + (product.isBought() ? 1 : 0);
+            hash = 31 * hash + (product.getProductName() == null ? 0 : product.getProductName().hashCode());
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    public boolean isVersioned() {
+        return listVersion != 0;
+    }
+
+    /**
+     * Ожидаемая версия списка семьи для изменения; null — без проверки.
+     */
+    public Long expectedFamilyVersion() {
+        return familyVersion == 0 ? null : familyVersion;
+    }
+
+    public String encode() {
+        var bytes = new byte[MAX_BYTES];
+        bytes[0] = FORMAT;
+        bytes[1] = (byte) action.getCode();
+        int length = writeVarLong(bytes, 2, productId);
+        length = writeVarLong(bytes, length, Integer.toUnsignedLong(listVersion));
+        length = writeVarLong(bytes, length, familyVersion);
+        return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(bytes, length));
+    }
+
+    public static CallBackToken decode(String data) {
+        if (data == null || data.isEmpty()) {
+            return UNKNOWN;
+        }
+        if (data.charAt(0) != PREFIX) {
+            return decodeLegacy(data);
+        }
+        try {
+            var bytes = Base64.getUrlDecoder().decode(data.substring(1));
+            if (bytes.length < 4 || bytes[0] != FORMAT) {
+                return UNKNOWN;
+            }
+            var action = CallBack.byCode(bytes[1]);
+            var position = new int[]{2};
+            long productId = readVarLong(bytes, position);
+            long listVersion = readVarLong(bytes, position);
+            long familyVersion = position[0] < bytes.length ? readVarLong(bytes, position) : 0;
+            return new CallBackToken(action, productId, (int) listVersion, familyVersion);
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Старый формат: "действие + id". Версии в нём нет, такие кнопки не проверяются на устаревание.
+     */
+    private static CallBackToken decodeLegacy(String data) {
+        var action = CallBack.getAction(data);
+        var suffix = data.substring(action.getAction().length());
+        long productId = 0;
+        if (!suffix.isEmpty()) {
+            try {
+                productId = Long.parseLong(suffix);
+            } catch (NumberFormatException e) {
+                return UNKNOWN;
+            }
+        }
+        return new CallBackToken(action, productId, 0, 0);
+    }
+
+    private static int writeVarLong(byte[] bytes, int offset, long value) {
+        int position = offset;
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Обрезанный токен");
+            }
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Слишком длинное число в токене");
+    }
+}
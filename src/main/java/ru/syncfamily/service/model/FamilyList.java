@@ -0,0 +1,16 @@
+package ru.syncfamily.service.model;
+
+import java.util.List;
+
+/**
+ * Состояние семьи после изменения списка: инициатор, упорядоченный список покупок и члены семьи.
+ *
+ * @param version  версия списка семьи ({@code families.version}) после изменения
+ * @param conflict ожидаемая версия не совпала: изменение не выполнялось, это текущее состояние
+ */
+public record FamilyList(User actor, List<Product> products, List<User> members, long version, boolean conflict) {
+
+    public long familyId() {
+        return actor.getFamilyId();
+    }
+}
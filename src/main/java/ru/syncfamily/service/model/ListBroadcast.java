@@ -0,0 +1,36 @@
+package ru.syncfamily.service.model;
+
+/**
+ * Намерение перерисовать список у всех членов семьи: переотправить сообщение или отредактировать его.
+ * В заголовке можно использовать {@link #USERNAME} — он заменяется именем получателя.
+ */
+public record ListBroadcast(boolean repost, boolean markdown, String header) {
+
+    public static final String USERNAME = "{username}";
+
+    /**
+     * Удалить старое сообщение со списком у каждого члена семьи и отправить новое.
+     */
+    public static ListBroadcast repost(String header) {
+        return new ListBroadcast(true, false, header);
+    }
+
+    /**
+     * Отредактировать сообщение со списком у каждого члена семьи, а если его ещё нет — отправить новое.
+     */
+    public static ListBroadcast edit(String header) {
+        return new ListBroadcast(false, true, header);
+    }
+
+    public String headerFor(User user) {
+        return header.replace(USERNAME, String.valueOf(user.getUsername()));
+    }
+
+    /**
+     * Склейка двух перерисовок: заголовок берётся из последней,
+     * а если хоть одна требовала переотправки, переотправляем.
+     */
+    public ListBroadcast mergeWith(ListBroadcast latest) {
+        return new ListBroadcast(repost || latest.repost, latest.markdown, latest.header);
+    }
+}
@@ -0,0 +1,4 @@
+package ru.syncfamily.service.model;
+
+public record OutboxEntry(long id, long familyId, long familyVersion, ListBroadcast broadcast) {
+}
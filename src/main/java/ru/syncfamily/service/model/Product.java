@@ -8,12 +8,12 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Product {
 
-    private Integer id;
+    private Long id;
 
     private Integer chatId;
 
@@ -23,5 +23,5 @@ public class Product {
 
     private LocalDateTime createdAt;
 
-    private Integer familyId;
+    private Long familyId;
 }
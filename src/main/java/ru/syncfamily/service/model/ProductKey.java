@@ -0,0 +1,27 @@
+package ru.syncfamily.service.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * Позиция продукта в списке: значения столбцов сортировки {@code (is_bought, created_at desc, id desc)}.
+ * Служит курсором страницы — ключ остаётся валидным, даже если сам продукт уже удалён или куплен.
+ */
+public record ProductKey(boolean bought, LocalDateTime createdAt, long id) implements Comparable<ProductKey> {
+
+    /**
+     * Тот же порядок, что и у списка покупок.
+     */
+    private static final Comparator<ProductKey> ORDER = Comparator.comparing(ProductKey::bought)
+            .thenComparing(ProductKey::createdAt, Comparator.nullsFirst(Comparator.reverseOrder()))
+            .thenComparing(ProductKey::id, Comparator.reverseOrder());
+
+    public static ProductKey of(Product product) {
+        return new ProductKey(product.isBought(), product.getCreatedAt(), product.getId());
+    }
+
+    @Override
+    public int compareTo(ProductKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.syncfamily.service.model;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Страница списка покупок.
+ *
+ * @param after         курсор, по которому страница прочитана (null — первая страница)
+ * @param hasNext       после страницы есть ещё продукты
+ * @param familyVersion версия списка семьи, по которой прочитана страница; изменения по её кнопкам ожидают эту версию
+ */
+public record ProductPage(List<Product> products, ProductKey after, boolean hasNext, long familyVersion) {
+
+    public boolean hasPrevious() {
+        return after != null;
+    }
+
+    /**
+     * Курсор следующей страницы — ключ последнего продукта этой.
+     */
+    public Optional<ProductKey> nextAfter() {
+        if (!hasNext || products.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(ProductKey.of(products.get(products.size() - 1)));
+    }
+
+    /**
+     * Страница из уже упорядоченного списка в памяти — те же правила, что и у чтения страницы из базы:
+     * продукты строго после курсора, а если после него ничего не осталось — последняя страница списка.
+     */
+    public static ProductPage of(List<Product> ordered, ProductKey after, int size, long familyVersion) {
+        int from = after == null ? 0 : upperBound(ordered, after);
+        if (from >= ordered.size() && after != null) {
+            from = Math.max(0, ordered.size() - size);
+            after = from == 0 ? null : ProductKey.of(ordered.get(from - 1));
+        }
+        int to = Math.min(ordered.size(), from + size);
+        return new ProductPage(List.copyOf(ordered.subList(from, to)), after, to < ordered.size(), familyVersion);
+    }
+
+    /**
+     * Курсор предыдущей страницы в упорядоченном списке; пусто — предыдущая страница первая.
+     */
+    public static Optional<ProductKey> previousAfter(List<Product> ordered, ProductKey after, int size) {
+        if (after == null) {
+            return Optional.empty();
+        }
+        // Предыдущая страница — size продуктов, заканчивающихся курсором; её курсор — продукт перед ними
+        int end = upperBound(ordered, after);
+        int from = end - size;
+        return from <= 0 ? Optional.empty() : Optional.of(ProductKey.of(ordered.get(from - 1)));
+    }
+
+    /**
+     * Индекс первого продукта строго после ключа.
+     */
+    private static int upperBound(List<Product> ordered, ProductKey key) {
+        int low = 0;
+        int high = ordered.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ProductKey.of(ordered.get(middle)).compareTo(key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
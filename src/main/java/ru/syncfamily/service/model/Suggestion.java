@@ -0,0 +1,7 @@
+package ru.syncfamily.service.model;
+
+/**
+ * Частая покупка семьи для быстрого добавления: {@code id} — строка частоты, его несёт кнопка.
+ */
+public record Suggestion(long id, String productName) {
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -14,4 +16,27 @@ public class User {
     private Integer lastMessageId;
     private boolean shoppingListEditMode;
     private Long editingProductId;
+
+    // Курсор текущей страницы списка, см. ProductKey; все три поля null — первая страница
+    private Boolean pageAfterBought;
+    private LocalDateTime pageAfterCreatedAt;
+    private Long pageAfterId;
+
+    public User copy() {
+        return new User(chatId, username, familyId, lastMessageId, shoppingListEditMode, editingProductId,
+                pageAfterBought, pageAfterCreatedAt, pageAfterId);
+    }
+
+    public ProductKey pageAfter() {
+        if (pageAfterId == null) {
+            return null;
+        }
+        return new ProductKey(Boolean.TRUE.equals(pageAfterBought), pageAfterCreatedAt, pageAfterId);
+    }
+
+    public void changePage(ProductKey after) {
+        pageAfterBought = after == null ? null : after.bought();
+        pageAfterCreatedAt = after == null ? null : after.createdAt();
+        pageAfterId = after == null ? null : after.id();
+    }
 }
@@ -0,0 +1,68 @@
+package ru.syncfamily.web;
+
+import io.smallrye.common.annotation.NonBlocking;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.syncfamily.SyncFamilyBot;
+import ru.syncfamily.config.BotConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Optional;
+
+/**
+ * Приём обновлений от Telegram в режиме webhook. Обновление только ставится в полосу семьи,
+ * а ответ Telegram получает сразу: обработка не должна задерживать доставку следующих обновлений.
+ */
+@Slf4j
+@Path(TelegramWebhookResource.PATH)
+@RequiredArgsConstructor
+public class TelegramWebhookResource {
+
+    public static final String PATH = "/telegram/webhook";
+
+    private static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final SyncFamilyBot syncFamilyBot;
+
+    @ConfigProperty(name = "sync-family.bot.mode", defaultValue = "long-polling")
+    BotConfig.Mode mode;
+
+    @ConfigProperty(name = "sync-family.bot.webhook.secret-token")
+    Optional<String> secretToken;
+
+    @POST
+    @NonBlocking
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response receive(@HeaderParam(SECRET_TOKEN_HEADER) String token, Update update) {
+        if (mode != BotConfig.Mode.WEBHOOK) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (!isValid(token)) {
+            log.warn("Запрос на webhook с неверным секретным токеном отклонен");
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        }
+        if (update != null) {
+            syncFamilyBot.consume(update);
+        }
+        return Response.ok().build();
+    }
+
+    private boolean isValid(String token) {
+        if (token == null || secretToken.isEmpty()) {
+            return false;
+        }
+        // Сравнение за постоянное время, чтобы токен нельзя было подобрать по задержке ответа
+        return MessageDigest.isEqual(
+                secretToken.get().getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,31 @@
+-- Сколько раз семья покупала продукт: пополняется при переносе купленных продуктов в историю,
+-- чтобы подсказки «частые покупки» читали top-K по индексу, а не считали историю
+CREATE TABLE IF NOT EXISTS family_sync.product_frequency
+(
+    id             bigserial primary key,
+    family_id      int8        not null references family_sync.families (id),
+    name_key       text        not null,
+    product_name   text        not null,
+    purchases      int4        not null,
+    last_bought_at timestamptz not null,
+    unique (family_id, name_key)
+);
+
+COMMENT ON COLUMN family_sync.product_frequency.name_key IS 'lower(btrim(product_name)): одно и то же название в разном регистре считается одним продуктом';
+COMMENT ON COLUMN family_sync.product_frequency.product_name IS 'Название в том виде, в каком продукт купили последним';
+
+CREATE INDEX IF NOT EXISTS idx_product_frequency_top
+    ON family_sync.product_frequency (family_id, purchases desc, last_bought_at desc);
+
+-- Покупки, уже перенесённые в историю
+INSERT INTO family_sync.product_frequency (family_id, name_key, product_name, purchases, last_bought_at)
+SELECT family_id,
+       lower(btrim(product_name)),
+       max(product_name),
+       count(*),
+       max(coalesce(bought_at, archived_at))
+FROM family_sync.purchase_history
+WHERE is_bought
+  AND family_id IN (SELECT id FROM family_sync.families)
+GROUP BY family_id, lower(btrim(product_name))
+ON CONFLICT (family_id, name_key) DO NOTHING;
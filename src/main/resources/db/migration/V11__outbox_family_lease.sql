@@ -0,0 +1,18 @@
+-- Аренда outbox по семьям: отправитель берёт семью целиком, блокируя её строку (for update skip locked),
+-- поэтому два узла не перерисовывают одну семью одновременно. Строка появляется с первой записью семьи в outbox
+CREATE TABLE IF NOT EXISTS family_sync.outbox_lease
+(
+    family_id     int8 primary key references family_sync.families (id) on delete cascade,
+    claimed_until timestamptz not null default '-infinity'
+);
+
+COMMENT ON COLUMN family_sync.outbox_lease.claimed_until IS 'Аренда семьи отправителем: после истечения её записи может взять другой отправитель';
+COMMENT ON COLUMN family_sync.outbox.claimed_until IS 'Не используется с V11: аренда берётся по семье в outbox_lease';
+
+INSERT INTO family_sync.outbox_lease (family_id)
+SELECT DISTINCT family_id
+FROM family_sync.outbox
+WHERE processed_at IS NULL
+ON CONFLICT DO NOTHING;
+
+CREATE INDEX IF NOT EXISTS idx_outbox_pending_family ON family_sync.outbox (family_id) WHERE processed_at IS NULL;
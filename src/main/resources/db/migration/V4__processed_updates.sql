@@ -0,0 +1,9 @@
+-- Обработанные обновления Telegram: защита от повторной обработки после рестарта или повторной доставки webhook
+CREATE TABLE IF NOT EXISTS family_sync.processed_updates
+(
+    update_id    int8 primary key,
+    processed_at timestamptz not null default now()
+);
+
+-- Для периодической очистки старых записей
+CREATE INDEX IF NOT EXISTS idx_processed_updates_processed_at ON family_sync.processed_updates (processed_at);
@@ -0,0 +1,19 @@
+-- Outbox перерисовок списка: намерение пишется в той же транзакции, что и изменение списка,
+-- а фоновый отправитель выбирает записи пачками и отмечает обработанные
+CREATE TABLE IF NOT EXISTS family_sync.outbox
+(
+    id            bigserial primary key,
+    family_id     int8        not null references family_sync.families (id),
+    repost        boolean     not null,
+    markdown      boolean     not null,
+    header        text        not null,
+    created_at    timestamptz not null default now(),
+    claimed_until timestamptz,
+    processed_at  timestamptz
+);
+
+COMMENT ON COLUMN family_sync.outbox.repost IS 'true - удалить старое сообщение и отправить новое, false - отредактировать';
+COMMENT ON COLUMN family_sync.outbox.header IS 'Заголовок списка; {username} заменяется именем получателя';
+COMMENT ON COLUMN family_sync.outbox.claimed_until IS 'Аренда записи отправителем: после истечения запись может взять другой отправитель';
+
+CREATE INDEX IF NOT EXISTS idx_outbox_pending ON family_sync.outbox (id) WHERE processed_at IS NULL;
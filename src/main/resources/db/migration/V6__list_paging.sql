@@ -0,0 +1,12 @@
+-- Текущая страница списка у члена семьи: ключ последнего продукта предыдущей страницы
+-- в порядке списка (is_bought, created_at desc, id desc). NULL — первая страница.
+ALTER TABLE IF EXISTS family_sync.users
+    ADD COLUMN IF NOT EXISTS page_after_bought     boolean,
+    ADD COLUMN IF NOT EXISTS page_after_created_at timestamptz,
+    ADD COLUMN IF NOT EXISTS page_after_id         int8;
+
+COMMENT ON COLUMN family_sync.users.page_after_id IS 'Курсор страницы списка покупок: id последнего продукта предыдущей страницы. Сам продукт может быть уже удалён — страница ищется по ключу, а не по строке.';
+
+-- Страница списка читается по ключу: индекс в порядке списка, без сортировки всех строк семьи
+CREATE INDEX IF NOT EXISTS idx_shopping_list_family_order
+    ON family_sync.shopping_list (family_id, is_bought, created_at desc, id desc);
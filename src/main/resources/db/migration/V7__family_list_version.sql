@@ -0,0 +1,9 @@
+-- Версия списка покупок семьи: каждое изменение списка увеличивает её в той же транзакции
+ALTER TABLE IF EXISTS family_sync.families
+    ADD COLUMN IF NOT EXISTS version int8 not null default 0;
+
+COMMENT ON COLUMN family_sync.families.version IS 'Монотонная версия списка покупок. Изменения по кнопкам ожидают версию, по которой нарисована кнопка (compare-and-set).';
+
+-- Версия списка, которую записала перерисовка: отправитель не рисует состояние старше неё
+ALTER TABLE IF EXISTS family_sync.outbox
+    ADD COLUMN IF NOT EXISTS family_version int8 not null default 0;
@@ -0,0 +1,15 @@
+-- Дубликаты некупленных продуктов семьи (без учёта регистра и пробелов по краям):
+-- оставляем самый ранний, остальные удаляем. users.editing_product_id обнулится внешним ключом
+DELETE
+FROM family_sync.shopping_list s
+    USING family_sync.shopping_list d
+WHERE s.family_id = d.family_id
+  AND NOT s.is_bought
+  AND NOT d.is_bought
+  AND lower(btrim(s.product_name)) = lower(btrim(d.product_name))
+  AND s.id > d.id;
+
+-- Некупленный продукт встречается в списке семьи один раз: вставка дубликата пропускается (ON CONFLICT DO NOTHING)
+CREATE UNIQUE INDEX IF NOT EXISTS uq_shopping_list_family_unbought_name
+    ON family_sync.shopping_list (family_id, lower(btrim(product_name)))
+    WHERE NOT is_bought;
@@ -0,0 +1,50 @@
+-- Когда продукт отметили купленным: купленные строки уходят в историю через bought-retention после этого
+ALTER TABLE IF EXISTS family_sync.shopping_list
+    ADD COLUMN IF NOT EXISTS bought_at timestamptz;
+
+UPDATE family_sync.shopping_list
+SET bought_at = now()
+WHERE is_bought
+  AND bought_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_shopping_list_bought_at
+    ON family_sync.shopping_list (bought_at) WHERE is_bought;
+
+-- История покупок: купленные и очищенные строки списка. Секции по месяцам архивации, секции по умолчанию нет:
+-- строки месяца без своей секции попали бы в неё, и создать секцию этого месяца было бы уже нельзя.
+-- Секции текущего и следующего месяца создаются здесь, дальше — при старте приложения и архиватором заранее
+CREATE TABLE IF NOT EXISTS family_sync.purchase_history
+(
+    product_id   int8        not null,
+    family_id    int8,
+    product_name text        not null,
+    created_at   timestamptz not null,
+    is_bought    boolean     not null,
+    bought_at    timestamptz,
+    archived_at  timestamptz not null default now()
+) PARTITION BY RANGE (archived_at);
+
+COMMENT ON COLUMN family_sync.purchase_history.product_id IS 'id строки в shopping_list; внешнего ключа нет — строки там уже нет';
+COMMENT ON COLUMN family_sync.purchase_history.is_bought IS 'false — продукт убрали из списка очисткой, не купив';
+
+DO
+$$
+    DECLARE
+        month_start date;
+    BEGIN
+        FOR month_start IN
+            SELECT date_trunc('month', now() AT TIME ZONE 'UTC')::date
+            UNION
+            SELECT (date_trunc('month', now() AT TIME ZONE 'UTC') + interval '1 month')::date
+            LOOP
+                EXECUTE format(
+                        'CREATE TABLE IF NOT EXISTS family_sync.%I PARTITION OF family_sync.purchase_history FOR VALUES FROM (%L) TO (%L)',
+                        'purchase_history_' || to_char(month_start, 'YYYY_MM'),
+                        month_start::timestamp AT TIME ZONE 'UTC',
+                        (month_start + interval '1 month')::timestamp AT TIME ZONE 'UTC');
+            END LOOP;
+    END
+$$;
+
+CREATE INDEX IF NOT EXISTS idx_purchase_history_family
+    ON family_sync.purchase_history (family_id, archived_at);